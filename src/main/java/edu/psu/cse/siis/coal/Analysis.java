@@ -46,17 +46,36 @@ import edu.psu.cse.siis.coal.lang.ParseException;
  * @param <A> A generic {@link CommandLineArguments} type for command line arguments.
  */
 public abstract class Analysis<A extends CommandLineArguments> {
+  private volatile boolean modelPreloaded = false;
+
   /**
-   * Pattern method to perform the analysis.
+   * Pattern method to perform the analysis in the {@link AnalysisContext} of the current thread.
    * 
    * @param commandLineArguments A {@link CommandLineArguments} subclass object that represents the
    *          command line arguments for this analysis.
    */
   public void performAnalysis(A commandLineArguments) {
+    performAnalysis(commandLineArguments, AnalysisContext.current());
+  }
+
+  /**
+   * Pattern method to perform the analysis in a given {@link AnalysisContext}. The context is set
+   * as the context of the current thread for the duration of the analysis.
+   * 
+   * @param commandLineArguments A {@link CommandLineArguments} subclass object that represents the
+   *          command line arguments for this analysis.
+   * @param context The context that holds the state of the analysis.
+   * @return False if the analysis was interrupted by a {@link FatalAnalysisException}, true
+   *         otherwise.
+   */
+  public boolean performAnalysis(A commandLineArguments, AnalysisContext context) {
+    AnalysisContext previousContext = AnalysisContext.setCurrent(context);
     try {
-      PropagationTimers.v().modelParsing.start();
-      loadModel(commandLineArguments);
-      PropagationTimers.v().modelParsing.end();
+      if (!modelPreloaded) {
+        PropagationTimers.v().modelParsing.start();
+        loadModel(commandLineArguments);
+        PropagationTimers.v().modelParsing.end();
+      }
       PropagationTimers.v().misc.start();
       registerFieldTransformerFactories(commandLineArguments);
       registerArgumentValueAnalyses(commandLineArguments);
@@ -69,11 +88,31 @@ public abstract class Analysis<A extends CommandLineArguments> {
       PropagationTimers.v().soot.end();
       processResults(commandLineArguments);
       finalizeAnalysis(commandLineArguments);
+      return true;
     } catch (FatalAnalysisException e) {
       handleFatalAnalysisException(commandLineArguments, e);
+      return false;
+    } finally {
+      AnalysisContext.setCurrent(previousContext);
     }
   }
 
+  /**
+   * Loads the COAL model once for all subsequent analyses. After this is called,
+   * {@link #performAnalysis} does not load the model anymore. This is used to analyze several
+   * inputs with the same model in a single JVM.
+   * 
+   * @param commandLineArguments A {@link CommandLineArguments} subclass object that holds the model
+   *          arguments.
+   * @throws FatalAnalysisException if the model could not be loaded.
+   */
+  public void preloadModel(A commandLineArguments) throws FatalAnalysisException {
+    PropagationTimers.v().modelParsing.start();
+    loadModel(commandLineArguments);
+    PropagationTimers.v().modelParsing.end();
+    modelPreloaded = true;
+  }
+
   /**
    * Loads the COAL model to be used for the analysis. The model can be stored either in a directory
    * with a flat structure (no subdirectories) or in a compiled (serialized) format.
@@ -89,7 +128,11 @@ public abstract class Analysis<A extends CommandLineArguments> {
       if (commanLineArguments.getCompiledModel() != null) {
         Model.loadModelFromCompiledFile(commanLineArguments.getCompiledModel());
       } else if (commanLineArguments.getModel() != null) {
-        Model.loadModel(commanLineArguments.getModel());
+        if (AnalysisParameters.v().isLazyModel()) {
+          Model.loadModelLazily(commanLineArguments.getModel());
+        } else {
+          Model.loadModel(commanLineArguments.getModel());
+        }
       } else {
         throw new FatalAnalysisException("No model file or directory was specified");
       }
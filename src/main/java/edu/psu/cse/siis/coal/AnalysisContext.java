@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.psu.cse.siis.coal.arguments.ArgumentValueManager;
+import edu.psu.cse.siis.coal.arguments.MethodReturnValueManager;
+import edu.psu.cse.siis.coal.field.transformers.FieldTransformerManager;
+
+/**
+ * The state of a single analysis. The <code>v()</code> methods of {@link AnalysisParameters},
+ * {@link IterationSolver}, {@link CallSiteClassifier}, {@link PropagationTimers},
+ * {@link ArgumentValueManager}, {@link MethodReturnValueManager},
+ * {@link FieldTransformerManager}, {@link UnitGraphCache} and the results in {@link Results} all
+ * refer to the context of the current thread.
+ * 
+ * A thread uses the default context unless another one is set with {@link #setCurrent}. Threads
+ * inherit the context of the thread that creates them, so the solver threads of an analysis use the
+ * context of the analysis. The {@link Model} is not part of the context and is shared by all
+ * analyses. It only needs to be loaded once, for example by overriding
+ * {@link Analysis#loadModel}.
+ * 
+ * Contexts separate the state of analyses that are run one after the other in the same JVM, such
+ * as the jobs of an {@link AnalysisServer}. Analyses cannot run concurrently, and
+ * {@link PropagationSceneTransformer} fails if an analysis starts while another one is running.
+ * Besides the state of Soot in {@link soot.G}, which should be reset between analyses, several
+ * parts of an analysis are global:
+ * <ul>
+ * <li>The string analysis library keeps the constraints of the whole application in static fields
+ * of <code>ConstraintCollector</code> and <code>Res2Constr</code>. They are reset at the beginning
+ * of each analysis (see {@link edu.psu.cse.siis.coal.arguments.StringValueAnalysis}).</li>
+ * <li>The resolved method index of the shared {@link Model} is cleared by each analysis.</li>
+ * <li>The intern pools are shared, and {@link Pool.Mode#PER_ANALYSIS} clears them at the
+ * beginning of each analysis.</li>
+ * </ul>
+ */
+public class AnalysisContext {
+  private static final AnalysisContext defaultContext = new AnalysisContext();
+  private static final InheritableThreadLocal<AnalysisContext> currentContext =
+      new InheritableThreadLocal<AnalysisContext>() {
+        @Override
+        protected AnalysisContext initialValue() {
+          return defaultContext;
+        }
+      };
+
+  private final AnalysisParameters analysisParameters = new AnalysisParameters();
+  private final IterationSolver iterationSolver = new IterationSolver();
+  private final CallSiteClassifier callSiteClassifier = new CallSiteClassifier();
+  private final ArgumentValueManager argumentValueManager = new ArgumentValueManager();
+  private final MethodReturnValueManager methodReturnValueManager =
+      new MethodReturnValueManager();
+  private final FieldTransformerManager fieldTransformerManager = new FieldTransformerManager();
+  private final UnitGraphCache unitGraphCache = new UnitGraphCache();
+  private final List<Result> results = Collections.synchronizedList(new ArrayList<Result>());
+  private volatile PropagationTimers propagationTimers = new PropagationTimers();
+
+  /**
+   * Returns the context of the current thread.
+   * 
+   * @return The current context.
+   */
+  public static AnalysisContext current() {
+    return currentContext.get();
+  }
+
+  /**
+   * Returns the context that is used by threads for which no other context was set.
+   * 
+   * @return The default context.
+   */
+  public static AnalysisContext getDefault() {
+    return defaultContext;
+  }
+
+  /**
+   * Sets the context of the current thread. Threads created afterwards by the current thread
+   * inherit it.
+   * 
+   * @param context The new context, or null to use the default context.
+   * @return The previous context of the current thread.
+   */
+  public static AnalysisContext setCurrent(AnalysisContext context) {
+    AnalysisContext previous = currentContext.get();
+    currentContext.set(context == null ? defaultContext : context);
+    return previous;
+  }
+
+  public AnalysisParameters getAnalysisParameters() {
+    return analysisParameters;
+  }
+
+  public IterationSolver getIterationSolver() {
+    return iterationSolver;
+  }
+
+  public CallSiteClassifier getCallSiteClassifier() {
+    return callSiteClassifier;
+  }
+
+  public ArgumentValueManager getArgumentValueManager() {
+    return argumentValueManager;
+  }
+
+  public MethodReturnValueManager getMethodReturnValueManager() {
+    return methodReturnValueManager;
+  }
+
+  public FieldTransformerManager getFieldTransformerManager() {
+    return fieldTransformerManager;
+  }
+
+  public UnitGraphCache getUnitGraphCache() {
+    return unitGraphCache;
+  }
+
+  public PropagationTimers getPropagationTimers() {
+    return propagationTimers;
+  }
+
+  /**
+   * Replaces the timers and counters of this context with new ones.
+   */
+  public void clearPropagationTimers() {
+    propagationTimers = new PropagationTimers();
+  }
+
+  /**
+   * Returns the results of the analyses that were run in this context.
+   * 
+   * @return The list of results.
+   */
+  public List<Result> getResults() {
+    return results;
+  }
+}
@@ -28,19 +28,24 @@ import org.slf4j.LoggerFactory;
 import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
 
 /**
- * Singleton with global analysis parameters.
+ * Analysis parameters. There is one instance per {@link AnalysisContext}.
  */
 public class AnalysisParameters {
-  private static AnalysisParameters instance = new AnalysisParameters();
-
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private Set<String> analysisClasses;
   private boolean iterative = true;
+  private boolean incremental = false;
+  private boolean lazyModel = false;
   private JimpleBasedInterproceduralCFG icfg;
   private boolean inferNonModeledTypes = true;
   private boolean useShimple = false;
   private int threadCount;
+  private int functionCacheSize = 0;
+  private Pool.Mode poolMode = Pool.Mode.STRONG;
+  private long argumentTimeLimit = 0;
+  private int stringWideningLimit = 0;
+  private final ValueLimits valueLimits = new ValueLimits();
 
   /**
    * Adds classes to the set of analysis classes. The analysis classes are the set of classes
@@ -93,6 +98,48 @@ public class AnalysisParameters {
     return iterative;
   }
 
+  /**
+   * Sets whether iterations should be incremental. In incremental mode, the field transformers for
+   * referenced COAL values are computed once at the end of each iteration and reused during the
+   * next one, and iterations stop as soon as none of them changed. The default value is false.
+   * 
+   * @param incremental The value of the flag.
+   */
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * Sets whether model files should be parsed on demand, when the classes they refer to are first
+   * looked up.
+   * 
+   * @param lazyModel The value of the flag.
+   * @see LazyModelLoader
+   */
+  public void setLazyModel(boolean lazyModel) {
+    this.lazyModel = lazyModel;
+  }
+
+  /**
+   * Determines if model files should be parsed on demand.
+   * 
+   * @return True if model files should be parsed on demand.
+   */
+  public boolean isLazyModel() {
+    return lazyModel;
+  }
+
+  /**
+   * Determines if iterations are incremental.
+   * 
+   * @return True if iterations are incremental.
+   * 
+   * @see #setIncremental(boolean)
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
   /**
    * Sets the interprocedural control flow graph for the analysis.
    * 
@@ -134,6 +181,93 @@ public class AnalysisParameters {
     this.threadCount = threadCount;
   }
 
+  /**
+   * Sets the maximum number of flow and edge functions that should be cached across iterations. A
+   * value of 0 disables the cache.
+   * 
+   * @param functionCacheSize The maximum number of cached functions.
+   */
+  public void setFunctionCacheSize(int functionCacheSize) {
+    this.functionCacheSize = functionCacheSize;
+  }
+
+  /**
+   * Determines the maximum number of flow and edge functions that should be cached across
+   * iterations.
+   * 
+   * @return The maximum number of cached functions, or 0 if caching is disabled.
+   */
+  public int getFunctionCacheSize() {
+    return functionCacheSize;
+  }
+
+  /**
+   * Sets the retention policy of the pools of interned values. The default mode is
+   * {@link Pool.Mode#STRONG}.
+   * 
+   * @param poolMode The pool mode.
+   */
+  public void setPoolMode(Pool.Mode poolMode) {
+    this.poolMode = poolMode;
+  }
+
+  /**
+   * Returns the retention policy of the pools of interned values.
+   * 
+   * @return The pool mode.
+   */
+  public Pool.Mode getPoolMode() {
+    return poolMode;
+  }
+
+  /**
+   * Sets the total wall-clock time after which argument values are not computed anymore and are
+   * considered unknown. A value of 0, which is the default, disables the limit.
+   * 
+   * @param argumentTimeLimit The time limit in seconds.
+   */
+  public void setArgumentTimeLimit(long argumentTimeLimit) {
+    this.argumentTimeLimit = argumentTimeLimit;
+  }
+
+  /**
+   * Returns the total wall-clock time after which argument values are considered unknown.
+   * 
+   * @return The time limit in seconds, or 0 if there is no limit.
+   */
+  public long getArgumentTimeLimit() {
+    return argumentTimeLimit;
+  }
+
+  /**
+   * Sets the number of strings above which sets of strings are widened to prefix patterns, such
+   * as <code>http://example.com/(.*)</code>. A value of 0, which is the default, disables
+   * widening.
+   * 
+   * @param stringWideningLimit The maximum number of strings in a set.
+   */
+  public void setStringWideningLimit(int stringWideningLimit) {
+    this.stringWideningLimit = stringWideningLimit;
+  }
+
+  /**
+   * Returns the number of strings above which sets of strings are widened to prefix patterns.
+   * 
+   * @return The maximum number of strings in a set, or 0 if widening is disabled.
+   */
+  public int getStringWideningLimit() {
+    return stringWideningLimit;
+  }
+
+  /**
+   * Returns the limits on the number of path values in COAL values and transformers.
+   * 
+   * @return The value limits.
+   */
+  public ValueLimits getValueLimits() {
+    return valueLimits;
+  }
+
   /**
    * Determines whether hotspot values should be inferred for values that are not modeled using
    * COAL.
@@ -163,14 +297,14 @@ public class AnalysisParameters {
   }
 
   /**
-   * Returns the singleton instance for this class.
+   * Returns the instance for the current {@link AnalysisContext}.
    * 
-   * @return The singleton instance for this class.
+   * @return The instance for the current analysis context.
    */
   public static AnalysisParameters v() {
-    return instance;
+    return AnalysisContext.current().getAnalysisParameters();
   }
 
-  private AnalysisParameters() {
+  AnalysisParameters() {
   }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.G;
+import edu.psu.cse.siis.coal.arguments.StringValueAnalysis;
+
+/**
+ * A long-running analysis server. The model is loaded once when the server starts, and analysis
+ * jobs are then read from the standard input or from a local port, one per line. This avoids the
+ * JVM startup and model loading costs for every analyzed input.
+ * 
+ * A job is a list of command line arguments separated by white space, for example
+ * <code>-in app.jar -out result.txt</code>. These arguments are added before the arguments the
+ * server was started with, so they take precedence. Each job is run with
+ * {@link Analysis#performAnalysis} in a new {@link AnalysisContext}, after resetting Soot with
+ * {@link G#reset()} and the static state of the string analysis with
+ * {@link StringValueAnalysis#resetGlobalState()}. The server responds to each job with a line
+ * <code>OK id summary</code>, where the summary is given by {@link PropagationTimers#getSummary()},
+ * or <code>ERROR id message</code> if the job failed.
+ * The line <code>quit</code> ends the current session and <code>shutdown</code> stops the server.
+ * 
+ * @param <A> A {@link CommandLineArguments} type.
+ */
+public class AnalysisServer<A extends CommandLineArguments> {
+  private static final String QUIT = "quit";
+  private static final String SHUTDOWN = "shutdown";
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final Analysis<A> analysis;
+  private final CommandLineParser<A> parser;
+  private final Class<A> clazz;
+  private final String[] serverArguments;
+  private int jobCounter = 0;
+  private boolean shutdown = false;
+
+  /**
+   * Creates an analysis server.
+   * 
+   * @param analysis The analysis that is run for each job.
+   * @param parser The parser for the job arguments.
+   * @param clazz The class type of the {@link CommandLineArguments}.
+   * @param args The command line arguments with which the server was started. The server options
+   *          are removed from them and the rest is added to the arguments of every job.
+   */
+  public AnalysisServer(Analysis<A> analysis, CommandLineParser<A> parser, Class<A> clazz,
+      String[] args) {
+    this.analysis = analysis;
+    this.parser = parser;
+    this.clazz = clazz;
+    this.serverArguments = removeServerArguments(args);
+  }
+
+  /**
+   * Loads the model and processes jobs until the server is shut down or the input ends.
+   * 
+   * @param commandLineArguments The arguments with which the server was started.
+   * @throws FatalAnalysisException if the model could not be loaded.
+   * @throws IOException if a communication error occurs.
+   */
+  public void start(A commandLineArguments) throws FatalAnalysisException, IOException {
+    try {
+      StringValueAnalysis.resetGlobalState();
+    } catch (RuntimeException e) {
+      throw new FatalAnalysisException("Server mode requires resetting the string analysis "
+          + "between jobs, which is not supported by this version of coal-strings", e);
+    }
+    analysis.preloadModel(commandLineArguments);
+    logger.info("Loaded model in " + PropagationTimers.v().modelParsing.getTime() + " ms");
+
+    if (commandLineArguments.hasOption("port")) {
+      int port;
+      try {
+        port = ((Number) commandLineArguments.getParsedOptionValue("port")).intValue();
+      } catch (ParseException e) {
+        throw new FatalAnalysisException("Could not parse port: "
+            + commandLineArguments.getOptionValue("port"), e);
+      }
+      serve(port);
+    } else {
+      serve(System.in, System.out);
+    }
+  }
+
+  /**
+   * Accepts connections on a local port and processes their jobs, one connection at a time.
+   * 
+   * @param port The port number.
+   * @throws IOException if a communication error occurs.
+   */
+  public void serve(int port) throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+      logger.info("Accepting analysis jobs on port " + serverSocket.getLocalPort());
+      while (!shutdown) {
+        try (Socket socket = serverSocket.accept()) {
+          serve(socket.getInputStream(), socket.getOutputStream());
+        }
+      }
+    }
+  }
+
+  /**
+   * Processes the jobs read from an input stream until the end of the stream or until a
+   * <code>quit</code> or <code>shutdown</code> line is read.
+   * 
+   * @param inputStream The stream from which jobs are read.
+   * @param outputStream The stream to which responses are written.
+   * @throws IOException if a communication error occurs.
+   */
+  public void serve(InputStream inputStream, OutputStream outputStream) throws IOException {
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    PrintWriter writer =
+        new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), true);
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      } else if (line.equals(QUIT)) {
+        break;
+      } else if (line.equals(SHUTDOWN)) {
+        shutdown = true;
+        break;
+      }
+
+      writer.println(runJob(line.split("\\s+")));
+    }
+    writer.flush();
+  }
+
+  /**
+   * Runs a single analysis job.
+   * 
+   * @param jobArguments The arguments of the job.
+   * @return The response line for the job.
+   */
+  public String runJob(String[] jobArguments) {
+    int id = ++jobCounter;
+    List<String> arguments = new ArrayList<>(Arrays.asList(jobArguments));
+    arguments.addAll(Arrays.asList(serverArguments));
+
+    AnalysisContext context = new AnalysisContext();
+    AnalysisContext previousContext = AnalysisContext.setCurrent(context);
+    try {
+      G.reset();
+      StringValueAnalysis.resetGlobalState();
+      A commandLineArguments =
+          parser.parseCommandLine(arguments.toArray(new String[arguments.size()]), clazz);
+      if (commandLineArguments == null) {
+        return "ERROR " + id + " Could not parse job arguments";
+      }
+      logger.info("Starting job " + id + " on " + commandLineArguments.getInput());
+      if (!analysis.performAnalysis(commandLineArguments, context)) {
+        return "ERROR " + id + " Fatal analysis error";
+      }
+
+      return "OK " + id + " " + context.getPropagationTimers().getSummary();
+    } catch (RuntimeException | StackOverflowError e) {
+      // Soot and the solver can overflow the stack on some inputs. This should not stop the server.
+      logger.error("Job " + id + " failed", e);
+      return "ERROR " + id + " " + e;
+    } finally {
+      AnalysisContext.setCurrent(previousContext);
+    }
+  }
+
+  /**
+   * Removes the options that only apply to the server from a list of arguments.
+   * 
+   * @param args Command line arguments.
+   * @return The arguments without the server options.
+   */
+  private static String[] removeServerArguments(String[] args) {
+    List<String> result = new ArrayList<>();
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("-server")) {
+        continue;
+      } else if (args[i].equals("-port")) {
+        ++i;
+        continue;
+      }
+      result.add(args[i]);
+    }
+
+    return result.toArray(new String[result.size()]);
+  }
+}
@@ -76,9 +76,9 @@ public class CallFlowFunctionFactory {
 
     final InvokeExpr ie = containsInvokeExpr ? stmt.getInvokeExpr() : null;
 
-    if (containsInvokeExpr
-        && (Model.v().getArgumentsForGenMethod(ie) != null || Model.v()
-            .getArgumentsForCopyConstructor(ie.getMethodRef()) != null)) {
+    CallSiteClassification classification = CallSiteClassifier.v().getClassification(stmt);
+    if (classification.getGenModifierArguments() != null
+        || classification.getCopyConstructorArguments() != null) {
       return KillAll.v();
     }
 
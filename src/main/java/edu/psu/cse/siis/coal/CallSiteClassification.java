@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+import edu.psu.cse.siis.coal.arguments.Argument;
+
+/**
+ * The classification of a call site with respect to the COAL model. This records the arguments of
+ * all the model elements that the call site matches, so that the model lookups (which hash method
+ * signatures and may walk the class hierarchy) are only performed once per call site.
+ */
+public class CallSiteClassification {
+  /**
+   * The kinds of call sites, in the order in which the function factories check them.
+   */
+  public enum Kind {
+    GEN_MODIFIER, COPY_METHOD, COPY_CONSTRUCTOR, QUERY, MODIFIER, SOURCE, NONE
+  }
+
+  public static final CallSiteClassification NONE = new CallSiteClassification();
+
+  private final Kind kind;
+  private final Argument[] genModifierArguments;
+  private final Argument[] copyMethodArguments;
+  private final Argument[] copyConstructorArguments;
+  private final Argument[] queryArguments;
+  private final Argument[] modifierArguments;
+  private final Argument[] sourceArguments;
+
+  private CallSiteClassification() {
+    this.kind = Kind.NONE;
+    this.genModifierArguments = null;
+    this.copyMethodArguments = null;
+    this.copyConstructorArguments = null;
+    this.queryArguments = null;
+    this.modifierArguments = null;
+    this.sourceArguments = null;
+  }
+
+  /**
+   * Classifies a statement by looking it up in the model.
+   * 
+   * @param stmt A statement that contains an invoke expression.
+   */
+  public CallSiteClassification(Stmt stmt) {
+    InvokeExpr invokeExpr = stmt.getInvokeExpr();
+    Model model = Model.v();
+    this.genModifierArguments = model.getArgumentsForGenMethod(invokeExpr);
+    this.copyMethodArguments = model.getArgumentsForCopyMethod(invokeExpr);
+    this.copyConstructorArguments =
+        model.getArgumentsForCopyConstructor(invokeExpr.getMethodRef());
+    this.queryArguments = model.getArgumentsForQuery(stmt);
+    this.modifierArguments = model.getArgumentsForMethod(invokeExpr);
+    this.sourceArguments = model.getArgumentsForSource(invokeExpr);
+
+    if (genModifierArguments != null) {
+      this.kind = Kind.GEN_MODIFIER;
+    } else if (copyMethodArguments != null) {
+      this.kind = Kind.COPY_METHOD;
+    } else if (copyConstructorArguments != null) {
+      this.kind = Kind.COPY_CONSTRUCTOR;
+    } else if (queryArguments != null) {
+      this.kind = Kind.QUERY;
+    } else if (modifierArguments != null) {
+      this.kind = Kind.MODIFIER;
+    } else if (sourceArguments != null) {
+      this.kind = Kind.SOURCE;
+    } else {
+      this.kind = Kind.NONE;
+    }
+  }
+
+  /**
+   * Returns the main kind of the call site. If a call site matches several model elements, the
+   * first one in the order of {@link Kind} is returned.
+   * 
+   * @return The kind of the call site.
+   */
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Returns the arguments of the model element that corresponds to the main kind of the call site.
+   * 
+   * @return An array of arguments, or null if the call site is not modeled.
+   */
+  public Argument[] getArguments() {
+    switch (kind) {
+      case GEN_MODIFIER:
+        return genModifierArguments;
+      case COPY_METHOD:
+        return copyMethodArguments;
+      case COPY_CONSTRUCTOR:
+        return copyConstructorArguments;
+      case QUERY:
+        return queryArguments;
+      case MODIFIER:
+        return modifierArguments;
+      case SOURCE:
+        return sourceArguments;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return The arguments if the call site is a generating modifier, null otherwise.
+   */
+  public Argument[] getGenModifierArguments() {
+    return genModifierArguments;
+  }
+
+  /**
+   * @return The arguments if the call site is a copy modifier, null otherwise.
+   */
+  public Argument[] getCopyMethodArguments() {
+    return copyMethodArguments;
+  }
+
+  /**
+   * @return The arguments if the call site is a copy constructor, null otherwise.
+   */
+  public Argument[] getCopyConstructorArguments() {
+    return copyConstructorArguments;
+  }
+
+  /**
+   * @return The arguments if the call site is a query, null otherwise.
+   */
+  public Argument[] getQueryArguments() {
+    return queryArguments;
+  }
+
+  /**
+   * @return The arguments if the call site is a modifier, null otherwise.
+   */
+  public Argument[] getModifierArguments() {
+    return modifierArguments;
+  }
+
+  /**
+   * @return The arguments if the call site is a COAL source, null otherwise.
+   */
+  public Argument[] getSourceArguments() {
+    return sourceArguments;
+  }
+}
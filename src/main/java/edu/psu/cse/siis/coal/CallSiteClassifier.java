@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+
+/**
+ * Side table that maps call sites to their {@link CallSiteClassification}. The reachable
+ * call sites are classified once before the IDE problem is solved. Call sites that were not
+ * classified beforehand are classified on demand.
+ */
+public class CallSiteClassifier {
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final Map<Unit, CallSiteClassification> classifications = new ConcurrentHashMap<>();
+
+  CallSiteClassifier() {
+  }
+
+  /**
+   * Returns the instance for the current {@link AnalysisContext}.
+   * 
+   * @return The instance for the current analysis context.
+   */
+  public static CallSiteClassifier v() {
+    return AnalysisContext.current().getCallSiteClassifier();
+  }
+
+  /**
+   * Classifies all call sites in the reachable methods of the scene. Previous classifications are
+   * discarded.
+   */
+  public void classifyReachableCallSites() {
+    classifications.clear();
+
+    for (Iterator<MethodOrMethodContext> iter = Scene.v().getReachableMethods().listener(); iter
+        .hasNext();) {
+      SootMethod method = iter.next().method();
+      if (method.hasActiveBody()) {
+        for (Unit unit : method.getActiveBody().getUnits()) {
+          if (((Stmt) unit).containsInvokeExpr()) {
+            classifications.put(unit, new CallSiteClassification((Stmt) unit));
+          }
+        }
+      }
+    }
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("Classified " + classifications.size() + " call sites");
+    }
+  }
+
+  /**
+   * Returns the classification of a statement.
+   * 
+   * @param stmt A statement.
+   * @return The classification of the statement, which is {@link CallSiteClassification#NONE} if
+   *         the statement does not contain an invoke expression.
+   */
+  public CallSiteClassification getClassification(Stmt stmt) {
+    if (!stmt.containsInvokeExpr()) {
+      return CallSiteClassification.NONE;
+    }
+
+    CallSiteClassification result = classifications.get(stmt);
+    if (result == null) {
+      result = new CallSiteClassification(stmt);
+      classifications.put(stmt, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Discards all classifications.
+   */
+  public void clear() {
+    classifications.clear();
+  }
+}
@@ -65,7 +65,8 @@ public class CallToReturnEdgeFunctionFactory {
 
     if (invokeExpr != null) {
       // The statement contains a method invocation.
-      Argument[] arguments = Model.v().getArgumentsForMethod(invokeExpr);
+      CallSiteClassification classification = CallSiteClassifier.v().getClassification(callStmt);
+      Argument[] arguments = classification.getModifierArguments();
 
       if (arguments != null) {
         // The call statement is a modifier.
@@ -89,7 +90,7 @@ public class CallToReturnEdgeFunctionFactory {
           }
         }
       } else {
-        arguments = Model.v().getArgumentsForGenMethod(invokeExpr);
+        arguments = classification.getGenModifierArguments();
 
         if (arguments != null) {
           if (callStmt instanceof DefinitionStmt) {
@@ -103,8 +104,7 @@ public class CallToReturnEdgeFunctionFactory {
         } else if (callSite instanceof DefinitionStmt) {
           DefinitionStmt definitionStmt = (DefinitionStmt) callSite;
 
-          arguments =
-              Model.v().getArgumentsForCopyConstructor(invokeExpr.getMethodRef().getSignature());
+          arguments = classification.getCopyConstructorArguments();
           if (arguments != null) {
             if (callNode.equals(invokeExpr.getArg(arguments[0].getArgnum()[0]))
                 && returnSideNode.equals(definitionStmt.getLeftOp())) {
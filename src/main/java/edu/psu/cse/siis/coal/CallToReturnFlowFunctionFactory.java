@@ -77,11 +77,12 @@ public class CallToReturnFlowFunctionFactory {
 
     final InvokeExpr invokeExpr = stmt.getInvokeExpr();
     SootMethodRef methodRef = invokeExpr.getMethodRef();
+    CallSiteClassification classification = CallSiteClassifier.v().getClassification(stmt);
 
     if (call instanceof DefinitionStmt) {
       // Look for generating modifiers before potentially skipping a method.
       final DefinitionStmt definitionStmt = (DefinitionStmt) call;
-      if (Model.v().getArgumentsForGenMethod(invokeExpr) != null) {
+      if (classification.getGenModifierArguments() != null) {
         if (logger.isDebugEnabled()) {
           logger.debug("Detected gen modifier: " + call);
         }
@@ -115,7 +116,7 @@ public class CallToReturnFlowFunctionFactory {
             }
           }
         };
-      } else if (Model.v().getArgumentsForCopyMethod(invokeExpr) != null
+      } else if (classification.getCopyMethodArguments() != null
           && invokeExpr instanceof InstanceInvokeExpr) {
         final Value leftValue = definitionStmt.getLeftOp();
         InstanceInvokeExpr instanceInvokeExpr = (InstanceInvokeExpr) invokeExpr;
@@ -138,7 +139,7 @@ public class CallToReturnFlowFunctionFactory {
           }
         };
       } else {
-        final Argument[] arguments = Model.v().getArgumentsForCopyConstructor(methodRef);
+        final Argument[] arguments = classification.getCopyConstructorArguments();
 
         if (arguments != null) {
           return new FlowFunction<Value>() {
@@ -171,12 +172,11 @@ public class CallToReturnFlowFunctionFactory {
     }
 
     if (call instanceof InvokeStmt) {
-      if (Model.v().getArgumentsForQuery((Stmt) call) != null
-          || Model.v().getArgumentsForMethod(invokeExpr) != null) {
+      if (classification.getQueryArguments() != null
+          || classification.getModifierArguments() != null) {
         return Identity.v();
       }
-      final Argument[] copyConstructorArguments =
-          Model.v().getArgumentsForCopyConstructor(invokeExpr.getMethodRef());
+      final Argument[] copyConstructorArguments = classification.getCopyConstructorArguments();
       if (copyConstructorArguments != null) {
         return new FlowFunction<Value>() {
           @Override
@@ -231,8 +231,8 @@ public class CallToReturnFlowFunctionFactory {
       }
       final DefinitionStmt definitionStmt = (DefinitionStmt) call;
 
-      if (Model.v().getArgumentsForQuery(definitionStmt) != null
-          || Model.v().getArgumentsForMethod(invokeExpr) != null) {
+      if (classification.getQueryArguments() != null
+          || classification.getModifierArguments() != null) {
 
         if (methodRef.isStatic()) {
           return Identity.v();
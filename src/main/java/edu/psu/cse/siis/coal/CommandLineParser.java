@@ -59,6 +59,11 @@ public abstract class CommandLineParser<A extends CommandLineArguments> {
       logger.error("Could not parse command line arguments", e);
       return null;
     }
+    if (!commandLine.hasOption("in") && !commandLine.hasOption("server")) {
+      printHelp(options);
+      logger.error("Missing required option: in");
+      return null;
+    }
 
     A commandLineArguments = null;
     try {
@@ -76,6 +81,8 @@ public abstract class CommandLineParser<A extends CommandLineArguments> {
     commandLineArguments.setOutput(commandLine.getOptionValue("out"));
     commandLineArguments.setTraverseModeled(commandLine.hasOption("traversemodeled"));
     AnalysisParameters.v().setInferNonModeledTypes(!commandLine.hasOption("modeledtypesonly"));
+    AnalysisParameters.v().setIncremental(commandLine.hasOption("incremental"));
+    AnalysisParameters.v().setLazyModel(commandLine.hasOption("lazymodel"));
 
     int threadCount;
     try {
@@ -91,6 +98,79 @@ public abstract class CommandLineParser<A extends CommandLineArguments> {
     }
     AnalysisParameters.v().setThreadCount(threadCount);
 
+    int functionCacheSize;
+    try {
+      functionCacheSize =
+          commandLineArguments.hasOption("functioncachesize") ? ((Number) commandLineArguments
+              .getParsedOptionValue("functioncachesize")).intValue() : 0;
+    } catch (ParseException exception) {
+      logger.error(
+          "Could not parse function cache size: "
+              + commandLineArguments.getOptionValue("functioncachesize"), exception);
+      return null;
+    }
+    AnalysisParameters.v().setFunctionCacheSize(functionCacheSize);
+
+    long argumentTimeLimit;
+    try {
+      argumentTimeLimit =
+          commandLineArguments.hasOption("argumenttimelimit") ? ((Number) commandLineArguments
+              .getParsedOptionValue("argumenttimelimit")).longValue() : 0;
+    } catch (ParseException exception) {
+      logger.error(
+          "Could not parse argument time limit: "
+              + commandLineArguments.getOptionValue("argumenttimelimit"), exception);
+      return null;
+    }
+    AnalysisParameters.v().setArgumentTimeLimit(argumentTimeLimit);
+
+    int stringWideningLimit;
+    try {
+      stringWideningLimit =
+          commandLineArguments.hasOption("stringwidening") ? ((Number) commandLineArguments
+              .getParsedOptionValue("stringwidening")).intValue() : 0;
+    } catch (ParseException exception) {
+      logger.error(
+          "Could not parse string widening limit: "
+              + commandLineArguments.getOptionValue("stringwidening"), exception);
+      return null;
+    }
+    AnalysisParameters.v().setStringWideningLimit(stringWideningLimit);
+
+    int valueLimit;
+    try {
+      valueLimit =
+          commandLineArguments.hasOption("valuelimit") ? ((Number) commandLineArguments
+              .getParsedOptionValue("valuelimit")).intValue() : Constants.VALUE_LIMIT;
+    } catch (ParseException exception) {
+      logger.error(
+          "Could not parse value limit: " + commandLineArguments.getOptionValue("valuelimit"),
+          exception);
+      return null;
+    }
+    AnalysisParameters.v().getValueLimits().setDefaultLimit(valueLimit);
+
+    if (commandLine.hasOption("valuelimits")) {
+      try {
+        AnalysisParameters.v().getValueLimits()
+            .setLimits(commandLine.getOptionValue("valuelimits"));
+      } catch (IllegalArgumentException exception) {
+        logger.error("Could not parse value limits: " + commandLine.getOptionValue("valuelimits"),
+            exception);
+        return null;
+      }
+    }
+
+    if (commandLine.hasOption("poolmode")) {
+      String poolMode = commandLine.getOptionValue("poolmode");
+      try {
+        AnalysisParameters.v().setPoolMode(Pool.Mode.valueOf(poolMode.toUpperCase()));
+      } catch (IllegalArgumentException exception) {
+        logger.error("Unknown pool mode: " + poolMode, exception);
+        return null;
+      }
+    }
+
     return commandLineArguments;
   }
 
@@ -126,14 +206,42 @@ public abstract class CommandLineParser<A extends CommandLineArguments> {
     options.addOption(Option.builder("cp").desc("The classpath for the analysis.").hasArg()
         .argName("classpath").required().longOpt("classpath").build());
     options.addOption(Option.builder("in").desc("The input code for the analysis.").hasArg()
-        .argName("input").required().longOpt("input").build());
+        .argName("input").longOpt("input").build());
     options.addOption(Option.builder("out").desc("The output directory or file.").hasArg()
         .argName("output").longOpt("output").build());
     options.addOption(Option.builder("traversemodeled").desc("Propagate through modeled classes.")
         .hasArg(false).build());
     options.addOption("modeledtypesonly", false, "Only infer modeled types.");
+    options.addOption("incremental", false,
+        "Only re-solve iterations when referenced values have changed.");
+    options.addOption("lazymodel", false,
+        "Only parse model files when the classes they refer to are used.");
     options.addOption(Option.builder("threadcount")
         .desc("The maximum number of threads that should be used.").hasArg()
         .argName("thread count").type(Number.class).build());
+    options.addOption(Option.builder("functioncachesize")
+        .desc("The maximum number of flow and edge functions cached across iterations.").hasArg()
+        .argName("cache size").type(Number.class).build());
+    options.addOption(Option.builder("poolmode")
+        .desc("How long interned values are kept: strong, weak or per_analysis.").hasArg()
+        .argName("pool mode").build());
+    options.addOption(Option.builder("argumenttimelimit")
+        .desc("The total time in seconds after which argument values are considered unknown.")
+        .hasArg().argName("seconds").type(Number.class).build());
+    options.addOption(Option.builder("stringwidening")
+        .desc("Widen sets of more than <limit> strings to prefix patterns.").hasArg()
+        .argName("limit").type(Number.class).build());
+    options.addOption(Option.builder("valuelimit")
+        .desc("Replace COAL values with more than <limit> paths with top. Defaults to "
+            + Constants.VALUE_LIMIT + ".").hasArg().argName("limit").type(Number.class).build());
+    options.addOption(Option.builder("valuelimits")
+        .desc("Comma-separated limits for modeled types or fields, "
+            + "such as android.content.Intent=64,android.content.Intent:extras=16.").hasArg()
+        .argName("limits").build());
+    options.addOption("server", false, "Load the model once and read analysis jobs from the "
+        + "standard input or from a local port. Each job is a line of arguments, such as -in.");
+    options.addOption(Option.builder("port")
+        .desc("The local port on which the server accepts jobs, instead of the standard input.")
+        .hasArg().argName("port").type(Number.class).build());
   }
 }
@@ -0,0 +1,490 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import edu.psu.cse.siis.coal.arguments.Argument;
+import edu.psu.cse.siis.coal.arguments.Field;
+
+/**
+ * Binary format for compiled COAL models. A compiled model is laid out as follows:
+ * <ul>
+ * <li>A header with the magic number and the format version.</li>
+ * <li>A table of all the strings in the model. Each string is stored once as a length-prefixed
+ * UTF-8 sequence and referred to by its index in the rest of the file.</li>
+ * <li>A table of length-prefixed {@link Argument} records.</li>
+ * <li>The model sections: modeled types, modifiers, generating modifiers, copy modifiers, sources,
+ * queries, copy constructors, constants, excluded classes, the fields of modeled types and value
+ * limits. Method descriptions refer to arguments by their index. Version 1 models, which do not
+ * have the last two sections, can still be read.</li>
+ * <li>A CRC32 checksum of everything that precedes it.</li>
+ * </ul>
+ * All integers are big-endian. Reading is done from a {@link ByteBuffer}, which allows compiled
+ * models to be memory-mapped.
+ */
+public class CompiledModelFormat {
+  /**
+   * The magic number at the start of compiled models ("COAL").
+   */
+  public static final int MAGIC = 0x434F414C;
+
+  public static final int VERSION = 2;
+
+  private static final int HEADER_LENGTH = 8;
+  private static final int CHECKSUM_LENGTH = 8;
+  private static final int NONE = -1;
+
+  private CompiledModelFormat() {
+  }
+
+  /**
+   * Determines if a buffer contains a model in this format. This only checks the magic number, so
+   * that models compiled with Java serialization can be told apart. The buffer position is not
+   * modified.
+   * 
+   * @param buffer A buffer that contains a compiled model.
+   * @return True if the buffer starts with the magic number of this format.
+   */
+  public static boolean isCompiledModel(ByteBuffer buffer) {
+    return buffer.limit() >= HEADER_LENGTH && buffer.getInt(0) == MAGIC;
+  }
+
+  /**
+   * Writes a model in this format.
+   * 
+   * @param model The model to write.
+   * @param outputStream The stream to which the model should be written. It is not closed.
+   * @throws IOException if something goes wrong when writing to the stream.
+   */
+  public static void write(Model model, OutputStream outputStream) throws IOException {
+    new Writer().write(model, outputStream);
+  }
+
+  /**
+   * Reads a model in this format. The model should be new, and {@link Model#endInitialization()}
+   * should be called afterwards.
+   * 
+   * @param buffer A buffer that contains a compiled model.
+   * @param model The model that should be populated.
+   * @throws IOException if the buffer does not contain a valid model in this format.
+   */
+  public static void read(ByteBuffer buffer, Model model) throws IOException {
+    try {
+      new Reader(buffer).read(model);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException
+        | NegativeArraySizeException exception) {
+      throw new IOException("Truncated or corrupted compiled model", exception);
+    }
+  }
+
+  private static class Writer {
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final Map<Argument, Integer> argumentIndices = new IdentityHashMap<>();
+    private final List<Argument> arguments = new ArrayList<>();
+
+    public void write(Model model, OutputStream outputStream) throws IOException {
+      // The sections are written first, in order to collect the strings and the arguments.
+      ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+      DataOutputStream sectionOutput = new DataOutputStream(sectionBytes);
+      writeStringSet(sectionOutput, model.getModeledTypes());
+      writeDescriptionMap(sectionOutput, model.getModifiers());
+      writeDescriptionMap(sectionOutput, model.getGenModifiers());
+      writeDescriptionMap(sectionOutput, model.getCopyModifiers());
+      writeDescriptionMap(sectionOutput, model.getSources());
+      writeDescriptionMap(sectionOutput, model.getQueries());
+      writeArgumentMap(sectionOutput, model.getCopyConstructors());
+      writeArgumentMap(sectionOutput, model.getConstants());
+      writeStringSet(sectionOutput, model.getExcludedClasses());
+      writeFieldMap(sectionOutput, model.getModeledTypeFields());
+      writeLimitMap(sectionOutput, model.getValueLimits());
+
+      ByteArrayOutputStream argumentBytes = new ByteArrayOutputStream();
+      DataOutputStream argumentOutput = new DataOutputStream(argumentBytes);
+      argumentOutput.writeInt(arguments.size());
+      for (Argument argument : arguments) {
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        writeArgument(new DataOutputStream(recordBytes), argument);
+        argumentOutput.writeInt(recordBytes.size());
+        recordBytes.writeTo(argumentOutput);
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(strings.size());
+      for (String string : strings) {
+        byte[] stringBytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(stringBytes.length);
+        output.write(stringBytes);
+      }
+      argumentOutput.flush();
+      argumentBytes.writeTo(output);
+      sectionOutput.flush();
+      sectionBytes.writeTo(output);
+      output.flush();
+
+      CRC32 crc = new CRC32();
+      byte[] content = bytes.toByteArray();
+      crc.update(content, 0, content.length);
+      outputStream.write(content);
+      new DataOutputStream(outputStream).writeLong(crc.getValue());
+    }
+
+    private int stringIndex(String string) {
+      if (string == null) {
+        return NONE;
+      }
+      Integer index = stringIndices.get(string);
+      if (index == null) {
+        index = strings.size();
+        strings.add(string);
+        stringIndices.put(string, index);
+      }
+      return index;
+    }
+
+    private int argumentIndex(Argument argument) {
+      Integer index = argumentIndices.get(argument);
+      if (index == null) {
+        index = arguments.size();
+        arguments.add(argument);
+        argumentIndices.put(argument, index);
+      }
+      return index;
+    }
+
+    private void writeStringSet(DataOutputStream output, Set<String> set) throws IOException {
+      output.writeInt(set.size());
+      for (String string : set) {
+        output.writeInt(stringIndex(string));
+      }
+    }
+
+    private void writeStringArray(DataOutputStream output, String[] array) throws IOException {
+      if (array == null) {
+        output.writeInt(NONE);
+        return;
+      }
+      output.writeInt(array.length);
+      for (String string : array) {
+        output.writeInt(stringIndex(string));
+      }
+    }
+
+    private void writeArgumentArray(DataOutputStream output, Argument[] array) throws IOException {
+      if (array == null) {
+        output.writeInt(NONE);
+        return;
+      }
+      output.writeInt(array.length);
+      for (Argument argument : array) {
+        output.writeInt(argumentIndex(argument));
+      }
+    }
+
+    private void writeDescriptionMap(DataOutputStream output, Map<String, MethodDescription> map)
+        throws IOException {
+      output.writeInt(map.size());
+      for (Map.Entry<String, MethodDescription> entry : map.entrySet()) {
+        output.writeInt(stringIndex(entry.getKey()));
+        output.writeInt(stringIndex(entry.getValue().getBaseClass()));
+        writeArgumentArray(output, entry.getValue().getArguments());
+      }
+    }
+
+    private void writeArgumentMap(DataOutputStream output, Map<String, Argument[]> map)
+        throws IOException {
+      output.writeInt(map.size());
+      for (Map.Entry<String, Argument[]> entry : map.entrySet()) {
+        output.writeInt(stringIndex(entry.getKey()));
+        writeArgumentArray(output, entry.getValue());
+      }
+    }
+
+    private void writeFieldMap(DataOutputStream output, Map<String, List<String>> map)
+        throws IOException {
+      output.writeInt(map.size());
+      for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+        output.writeInt(stringIndex(entry.getKey()));
+        List<String> fields = entry.getValue();
+        writeStringArray(output, fields.toArray(new String[fields.size()]));
+      }
+    }
+
+    private void writeLimitMap(DataOutputStream output, Map<String, Integer> map)
+        throws IOException {
+      output.writeInt(map.size());
+      for (Map.Entry<String, Integer> entry : map.entrySet()) {
+        output.writeInt(stringIndex(entry.getKey()));
+        output.writeInt(entry.getValue());
+      }
+    }
+
+    private void writeArgument(DataOutputStream output, Argument argument) throws IOException {
+      int[] argnum = argument.getArgnum();
+      if (argnum == null) {
+        output.writeInt(NONE);
+      } else {
+        output.writeInt(argnum.length);
+        for (int number : argnum) {
+          output.writeInt(number);
+        }
+      }
+      output.writeInt(stringIndex(argument.getDeclaredType()));
+      Field field = argument.getField();
+      output.writeInt(field == null ? NONE : stringIndex(field.getName()));
+      output.writeInt(field == null ? NONE : stringIndex(field.getType()));
+      writeStringArray(output, argument.getActions());
+      writeStringArray(output, argument.getInlineValues());
+      Map<String, String> properties = argument.getProperties();
+      if (properties == null) {
+        output.writeInt(NONE);
+      } else {
+        output.writeInt(properties.size());
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+          output.writeInt(stringIndex(entry.getKey()));
+          output.writeInt(stringIndex(entry.getValue()));
+        }
+      }
+      output.writeShort(argument.getCount());
+      output.writeInt(stringIndex(argument.getReferencedFieldName()));
+    }
+  }
+
+  private static class Reader {
+    private final ByteBuffer buffer;
+    private final Map<String, Field> fields = new HashMap<>();
+    private String[] strings;
+    private Argument[] arguments;
+
+    public Reader(ByteBuffer buffer) {
+      this.buffer = buffer.duplicate();
+      this.buffer.position(0);
+    }
+
+    public void read(Model model) throws IOException {
+      if (!isCompiledModel(buffer)) {
+        throw new IOException("Not a compiled model");
+      }
+      buffer.position(4);
+      int version = buffer.getInt();
+      if (version < 1 || version > VERSION) {
+        throw new IOException("Unsupported compiled model version " + version + " (expected "
+            + VERSION + ")");
+      }
+      verifyChecksum();
+
+      strings = new String[readCount()];
+      for (int i = 0; i < strings.length; ++i) {
+        byte[] stringBytes = new byte[readCount()];
+        buffer.get(stringBytes);
+        strings[i] = new String(stringBytes, StandardCharsets.UTF_8);
+      }
+
+      arguments = new Argument[readCount()];
+      for (int i = 0; i < arguments.length; ++i) {
+        int recordLength = readCount();
+        int recordEnd = buffer.position() + recordLength;
+        arguments[i] = readArgument();
+        if (buffer.position() != recordEnd) {
+          throw new IOException("Malformed argument record " + i);
+        }
+      }
+
+      readStringSet(model.getModeledTypes());
+      readDescriptionMap(model.getModifiers());
+      readDescriptionMap(model.getGenModifiers());
+      readDescriptionMap(model.getCopyModifiers());
+      readDescriptionMap(model.getSources());
+      readDescriptionMap(model.getQueries());
+      readArgumentMap(model.getCopyConstructors());
+      readArgumentMap(model.getConstants());
+      readStringSet(model.getExcludedClasses());
+      if (version >= 2) {
+        readFieldMap(model);
+        readLimitMap(model.getValueLimits());
+      }
+
+      if (buffer.position() != buffer.limit() - CHECKSUM_LENGTH) {
+        throw new IOException("Unexpected data at the end of the compiled model");
+      }
+    }
+
+    private void verifyChecksum() throws IOException {
+      int contentLength = buffer.limit() - CHECKSUM_LENGTH;
+      if (contentLength < HEADER_LENGTH) {
+        throw new IOException("Truncated compiled model");
+      }
+
+      CRC32 crc = new CRC32();
+      ByteBuffer content = buffer.duplicate();
+      content.position(0);
+      content.limit(contentLength);
+      byte[] chunk = new byte[Math.min(contentLength, 64 * 1024)];
+      while (content.hasRemaining()) {
+        int length = Math.min(chunk.length, content.remaining());
+        content.get(chunk, 0, length);
+        crc.update(chunk, 0, length);
+      }
+
+      if (crc.getValue() != buffer.getLong(contentLength)) {
+        throw new IOException("Checksum mismatch in compiled model");
+      }
+    }
+
+    private int readCount() throws IOException {
+      int count = buffer.getInt();
+      if (count < 0 || count > buffer.remaining()) {
+        throw new IOException("Invalid length " + count + " in compiled model");
+      }
+      return count;
+    }
+
+    private String readString() {
+      int index = buffer.getInt();
+      return index == NONE ? null : strings[index];
+    }
+
+    private String[] readStringArray() {
+      int length = buffer.getInt();
+      if (length == NONE) {
+        return null;
+      }
+      String[] result = new String[length];
+      for (int i = 0; i < length; ++i) {
+        result[i] = readString();
+      }
+      return result;
+    }
+
+    private Argument[] readArgumentArray() {
+      int length = buffer.getInt();
+      if (length == NONE) {
+        return null;
+      }
+      Argument[] result = new Argument[length];
+      for (int i = 0; i < length; ++i) {
+        result[i] = arguments[buffer.getInt()];
+      }
+      return result;
+    }
+
+    private void readStringSet(Set<String> set) throws IOException {
+      int size = readCount();
+      for (int i = 0; i < size; ++i) {
+        set.add(readString());
+      }
+    }
+
+    private void readDescriptionMap(Map<String, MethodDescription> map) throws IOException {
+      int size = readCount();
+      for (int i = 0; i < size; ++i) {
+        String signature = readString();
+        String baseClass = readString();
+        map.put(signature, new MethodDescription(baseClass, readArgumentArray()));
+      }
+    }
+
+    private void readArgumentMap(Map<String, Argument[]> map) throws IOException {
+      int size = readCount();
+      for (int i = 0; i < size; ++i) {
+        String key = readString();
+        map.put(key, readArgumentArray());
+      }
+    }
+
+    private void readFieldMap(Model model) throws IOException {
+      int size = readCount();
+      for (int i = 0; i < size; ++i) {
+        String type = readString();
+        String[] fields = readStringArray();
+        if (fields == null) {
+          throw new IOException("Missing fields for modeled type " + type);
+        }
+        for (String field : fields) {
+          model.addField(type, field);
+        }
+      }
+    }
+
+    private void readLimitMap(Map<String, Integer> map) throws IOException {
+      int size = readCount();
+      for (int i = 0; i < size; ++i) {
+        String key = readString();
+        map.put(key, buffer.getInt());
+      }
+    }
+
+    private Argument readArgument() {
+      Argument argument = new Argument();
+
+      int argnumLength = buffer.getInt();
+      if (argnumLength != NONE) {
+        int[] argnum = new int[argnumLength];
+        for (int i = 0; i < argnumLength; ++i) {
+          argnum[i] = buffer.getInt();
+        }
+        argument.setArgnum(argnum);
+      }
+      argument.setType(readString());
+      String fieldName = readString();
+      String fieldType = readString();
+      if (fieldName != null) {
+        argument.setField(getField(fieldName, fieldType));
+      }
+      argument.setActions(readStringArray());
+      argument.setInlineValues(readStringArray());
+      int propertyCount = buffer.getInt();
+      for (int i = 0; i < propertyCount; ++i) {
+        String key = readString();
+        argument.addProperty(key, readString());
+      }
+      argument.setCount(buffer.getShort());
+      argument.setReferencedFieldName(readString());
+
+      return argument;
+    }
+
+    private Field getField(String name, String type) {
+      String key = name + " " + type;
+      Field field = fields.get(key);
+      if (field == null) {
+        field = new Field(name, type);
+        fields.put(key, field);
+      }
+      return field;
+    }
+  }
+}
@@ -35,7 +35,12 @@ public class DefaultCommandLineParser extends CommandLineParser<DefaultCommandLi
     System.out.println(COPYRIGHT);
     formatter.printHelp("coal -input <input directory> -classpath <classpath> "
         + "-[c]model <[compiled] model directory or files> [-traversemodeled] "
-        + "[-modeledtypesonly] [-threadcount <thread count>]", options);
+        + "[-modeledtypesonly] [-incremental] [-lazymodel] [-threadcount <thread count>] "
+        + "[-functioncachesize <cache size>] [-poolmode <pool mode>] "
+        + "[-argumenttimelimit <seconds>] "
+        + "[-stringwidening <limit>] [-valuelimit <limit>] [-valuelimits <limits>] "
+        + "[-server [-port <port>]]",
+        options);
   }
 
 }
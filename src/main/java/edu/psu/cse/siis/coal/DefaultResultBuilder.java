@@ -59,7 +59,7 @@ public class DefaultResultBuilder implements ResultBuilder {
           && !Model.v().isExcludedClass(method.getDeclaringClass().getName())
           && !method.getDeclaringClass().getName().equals("dummyMainClass")) {
         ++PropagationTimers.v().reachableMethods;
-        ExceptionalUnitGraph cfg = new ExceptionalUnitGraph(method.getActiveBody());
+        ExceptionalUnitGraph cfg = UnitGraphCache.v().getGraph(method.getActiveBody());
 
         Stack<Unit> stack = new Stack<>();
         for (Unit unit : cfg.getHeads()) {
@@ -80,7 +80,8 @@ public class DefaultResultBuilder implements ResultBuilder {
             stack.push(successor);
           }
 
-          Argument[] arguments = Model.v().getArgumentsForQuery((Stmt) unit);
+          Argument[] arguments =
+              CallSiteClassifier.v().getClassification((Stmt) unit).getQueryArguments();
           if (arguments != null) {
             Stmt stmt = (Stmt) unit;
 
@@ -99,11 +100,10 @@ public class DefaultResultBuilder implements ResultBuilder {
                       + " for invoke expression " + invokeExpr);
                 }
                 if (basePropagationValue instanceof PropagationValue) {
-                  PropagationValue propagationValue = (PropagationValue) basePropagationValue;
-
                   PropagationTimers.v().resultGeneration.end();
                   PropagationTimers.v().valueComposition.start();
-                  propagationValue.makeFinalValue(solver);
+                  PropagationValue propagationValue =
+                      ((PropagationValue) basePropagationValue).getFinalValue(solver);
                   PropagationTimers.v().valueComposition.end();
                   PropagationTimers.v().resultGeneration.start();
 
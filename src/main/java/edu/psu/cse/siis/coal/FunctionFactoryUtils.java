@@ -41,8 +41,6 @@ import soot.jimple.spark.sets.EmptyPointsToSet;
 public class FunctionFactoryUtils {
   private static final Logger logger = LoggerFactory.getLogger(FunctionFactoryUtils.class);
 
-  private static PointsToAnalysis pointsToAnalysis = null;
-
   /**
    * Gets the points-to set for a given value. The value can be, for example, a variable or a field.
    * 
@@ -50,9 +48,8 @@ public class FunctionFactoryUtils {
    * @return The points-to set for the input value.
    */
   public static PointsToSet getPointsToSetForValue(Value value) {
-    if (pointsToAnalysis == null) {
-      pointsToAnalysis = Scene.v().getPointsToAnalysis();
-    }
+    // The points-to analysis is not cached, since it changes when Soot is reset between analyses.
+    PointsToAnalysis pointsToAnalysis = Scene.v().getPointsToAnalysis();
 
     if (value instanceof Local) {
       return pointsToAnalysis.reachingObjects((Local) value);
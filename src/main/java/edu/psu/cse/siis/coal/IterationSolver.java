@@ -19,8 +19,11 @@
 package edu.psu.cse.siis.coal;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,15 +42,21 @@ import edu.psu.cse.siis.coal.values.PropagationValue;
 import edu.psu.cse.siis.coal.values.TopPropagationValue;
 
 /**
- * Singleton for managing iterations of the IDE analysis.
+ * Manages the iterations of the IDE analysis. There is one instance per {@link AnalysisContext}.
  */
 public class IterationSolver {
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
-  private PropagationSolver solver = null;
-  private static IterationSolver instance = new IterationSolver();
-  private Set<LocationIdentifier> currentTopValues;
+  private volatile Iteration currentIteration = new Iteration(null, null);
   private Set<LocationIdentifier> previousTopValues;
+  private Map<LocationIdentifier, Set<FieldTransformer>> precomputedTransformers;
+  private final StripedCounter activeRequests = new StripedCounter();
+  private final ThreadLocal<int[]> threadRequestCounts = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
 
   private static final class LocationIdentifier {
     private final Unit stmt;
@@ -55,6 +64,7 @@ public class IterationSolver {
     private final String field;
     private final String type;
     private final String operation;
+    private final int hashCode;
 
     public LocationIdentifier(Unit stmt, Value symbol, String field, String type, String operation) {
       this.stmt = stmt;
@@ -62,11 +72,12 @@ public class IterationSolver {
       this.field = field;
       this.type = type;
       this.operation = operation;
+      this.hashCode = Objects.hashCode(stmt, symbol, field, type, operation);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hashCode(this.stmt, this.symbol, this.field, this.type, this.operation);
+      return this.hashCode;
     }
 
     @Override
@@ -83,8 +94,40 @@ public class IterationSolver {
     }
   }
 
+  /**
+   * The state of an iteration that is shared with the solver threads. The previous solver and the
+   * precomputed transformers are set when the iteration is initialized and never modified
+   * afterwards. The other collections are concurrent, so that no locking is needed while solving.
+   * The transformers generated during the iteration are memoized, since the solver requests the
+   * same call-to-return edge functions many times.
+   */
+  private static final class Iteration {
+    private final PropagationSolver previousSolver;
+    private final Map<LocationIdentifier, Set<FieldTransformer>> precomputedTransformers;
+    private final Set<LocationIdentifier> topValues = Collections
+        .newSetFromMap(new ConcurrentHashMap<LocationIdentifier, Boolean>());
+    private final ConcurrentHashMap<LocationIdentifier, Set<FieldTransformer>> transformers =
+        new ConcurrentHashMap<>();
+
+    public Iteration(PropagationSolver previousSolver,
+        Map<LocationIdentifier, Set<FieldTransformer>> precomputedTransformers) {
+      this.previousSolver = previousSolver;
+      this.precomputedTransformers =
+          precomputedTransformers == null ? null : Collections
+              .unmodifiableMap(precomputedTransformers);
+    }
+  }
+
+  IterationSolver() {
+  }
+
+  /**
+   * Returns the instance for the current {@link AnalysisContext}.
+   * 
+   * @return The instance for the current analysis context.
+   */
   public static IterationSolver v() {
-    return instance;
+    return AnalysisContext.current().getIterationSolver();
   }
 
   /**
@@ -93,20 +136,67 @@ public class IterationSolver {
    * @return True if a fixed point has been reached or there are no undetermined values.
    */
   public boolean hasFoundFixedPoint() {
+    Set<LocationIdentifier> currentTopValues = currentIteration.topValues;
     return currentTopValues.isEmpty() || currentTopValues.equals(previousTopValues);
   }
 
+  /**
+   * Determines if a fixed point has been reached after solving the problem with a given solver. In
+   * incremental mode, this recomputes the field transformers of all referenced values using the
+   * results of the solver and compares them with the ones used during the iteration. A fixed point
+   * is reached when none of them changed. The recomputed transformers are kept and returned as is
+   * during the next iteration. In non-incremental mode, this is equivalent to
+   * {@link #hasFoundFixedPoint()}.
+   * 
+   * @param propagationSolver The solver from the iteration that just ended.
+   * @return True if a fixed point has been reached.
+   */
+  public boolean hasFoundFixedPoint(PropagationSolver propagationSolver) {
+    if (!AnalysisParameters.v().isIncremental()) {
+      return hasFoundFixedPoint();
+    }
+
+    Map<LocationIdentifier, Set<FieldTransformer>> currentTransformers =
+        currentIteration.transformers;
+    Map<LocationIdentifier, Set<FieldTransformer>> nextTransformers = new HashMap<>();
+    int changed = 0;
+
+    for (Map.Entry<LocationIdentifier, Set<FieldTransformer>> entry : currentTransformers
+        .entrySet()) {
+      LocationIdentifier location = entry.getKey();
+      Set<FieldTransformer> newTransformers =
+          computeTransformersFromReferencedValue(propagationSolver, location);
+      if (newTransformers == null) {
+        newTransformers = makeTopTransformers(location);
+      }
+      if (!newTransformers.equals(entry.getValue())) {
+        ++changed;
+      }
+      nextTransformers.put(location, newTransformers);
+    }
+
+    logger.info(changed + " out of " + currentTransformers.size()
+        + " referenced values changed");
+
+    precomputedTransformers = nextTransformers;
+
+    return changed == 0;
+  }
+
   /**
    * Initializes the iteration manager before an iteration. This should be called before every
-   * iteration.
+   * iteration, while no solver thread is running.
    * 
    * @param propagationSolver The solver from the previous iteration, or null if this is the first
    *          iteration.
    */
-  public synchronized void initialize(PropagationSolver propagationSolver) {
-    solver = propagationSolver;
-    previousTopValues = currentTopValues;
-    currentTopValues = new HashSet<>();
+  public void initialize(PropagationSolver propagationSolver) {
+    if (propagationSolver == null) {
+      precomputedTransformers = null;
+    }
+    previousTopValues = currentIteration.topValues;
+    // The new iteration is published with a single volatile write.
+    currentIteration = new Iteration(propagationSolver, precomputedTransformers);
   }
 
   /**
@@ -125,37 +215,97 @@ public class IterationSolver {
    */
   public Set<FieldTransformer> makeTransformersFromReferencedValue(Unit stmt, Value symbol,
       String field, String type, String operation) {
-    synchronized (this) {
-      if (solver == null) {
-        // This is the first iteration, return top.
-        currentTopValues.add(new LocationIdentifier(stmt, symbol, field, type, operation));
-        return Collections.singleton(ArgumentValueManager.v().getTopFieldTransformer(type,
-            operation));
+    PropagationTimers timers = PropagationTimers.v();
+    timers.referencedValueRequests.increment();
+    ++threadRequestCounts.get()[0];
+    // Striped counters keep solver threads from writing to a shared location on every request.
+    activeRequests.increment();
+    if (activeRequests.sum() > 1) {
+      // Another solver thread is in this method: this would have been a contended lock.
+      timers.referencedValueContention.increment();
+    }
+
+    try {
+      LocationIdentifier locationIdentifier =
+          new LocationIdentifier(stmt, symbol, field, type, operation);
+      Iteration iteration = currentIteration;
+
+      Set<FieldTransformer> result = iteration.transformers.get(locationIdentifier);
+      if (result != null) {
+        timers.referencedValueCacheHits.increment();
+        return result;
       }
+      timers.referencedValueCacheMisses.increment();
+
+      if (iteration.precomputedTransformers != null) {
+        // Incremental mode: the transformers were already computed when checking for a fixed
+        // point.
+        result = iteration.precomputedTransformers.get(locationIdentifier);
+      }
+
+      if (result == null) {
+        result =
+            iteration.previousSolver == null ? null : computeTransformersFromReferencedValue(
+                iteration.previousSolver, locationIdentifier);
+      }
+      if (result == null) {
+        // This is either the first iteration or we still got top.
+        iteration.topValues.add(locationIdentifier);
+        result = makeTopTransformers(locationIdentifier);
+      }
+
+      // If another thread computed the same transformers concurrently, use its result so that all
+      // edge functions of the iteration share the same instances.
+      Set<FieldTransformer> previousResult =
+          iteration.transformers.putIfAbsent(locationIdentifier, result);
+
+      return previousResult == null ? result : previousResult;
+    } finally {
+      activeRequests.decrement();
     }
+  }
+
+  /**
+   * Returns the number of requests for the field transformers of referenced values made by the
+   * current thread. Callers compare this number before and after building a function, in order to
+   * tell whether the function depends on the current iteration.
+   * 
+   * @return The number of requests made by the current thread.
+   */
+  public int getThreadReferencedValueRequests() {
+    return threadRequestCounts.get()[0];
+  }
 
+  /**
+   * Computes the field transformers for a referenced value, given the results of a solver.
+   * 
+   * @param propagationSolver A solver from a previous iteration.
+   * @param locationIdentifier The referenced value.
+   * @return The set of field transformers, or null if the referenced value is unknown.
+   */
+  private Set<FieldTransformer> computeTransformersFromReferencedValue(
+      PropagationSolver propagationSolver, LocationIdentifier locationIdentifier) {
     if (logger.isDebugEnabled()) {
-      logger.debug("Making transformer for " + symbol + " for " + field + " at \n" + stmt);
+      logger.debug("Making transformer for " + locationIdentifier.symbol + " for "
+          + locationIdentifier.field + " at \n" + locationIdentifier.stmt);
     }
 
-    BasePropagationValue referencedBaseValue = solver.resultAt(stmt, symbol);
+    BasePropagationValue referencedBaseValue =
+        propagationSolver.resultAt(locationIdentifier.stmt, locationIdentifier.symbol);
     if (referencedBaseValue == null || referencedBaseValue instanceof TopPropagationValue) {
       // This is not the first iteration, but we still got top.
-      logger.info("Found top at " + stmt);
-      synchronized (this) {
-        currentTopValues.add(new LocationIdentifier(stmt, symbol, field, type, operation));
-      }
-      return Collections
-          .singleton(ArgumentValueManager.v().getTopFieldTransformer(type, operation));
+      logger.info("Found top at " + locationIdentifier.stmt);
+      return null;
     }
 
     PropagationValue referencedPropagationValue = (PropagationValue) referencedBaseValue;
 
-    Set<FieldValue> fieldValues = referencedPropagationValue.getValuesForField(field);
+    Set<FieldValue> fieldValues =
+        referencedPropagationValue.getValuesForField(locationIdentifier.field);
     Set<FieldTransformer> result = new HashSet<>();
     for (FieldValue fieldValue : fieldValues) {
       if (fieldValue != null) {
-        result.add(FieldTransformerManager.v().makeFieldTransformer(operation,
+        result.add(FieldTransformerManager.v().makeFieldTransformer(locationIdentifier.operation,
             fieldValue.getValue()));
       } else {
         result.add(null);
@@ -168,4 +318,15 @@ public class IterationSolver {
 
     return result;
   }
+
+  /**
+   * Returns the field transformers that represent an unknown referenced value.
+   * 
+   * @param locationIdentifier The referenced value.
+   * @return A singleton set with a top field transformer.
+   */
+  private Set<FieldTransformer> makeTopTransformers(LocationIdentifier locationIdentifier) {
+    return Collections.singleton(ArgumentValueManager.v().getTopFieldTransformer(
+        locationIdentifier.type, locationIdentifier.operation));
+  }
 }
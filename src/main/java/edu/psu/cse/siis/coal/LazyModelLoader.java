@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.psu.cse.siis.coal.lang.ParseException;
+import edu.psu.cse.siis.coal.lang.PropagationParser;
+
+/**
+ * Loader for models that are parsed on demand. When it is created, the loader scans the model
+ * files to find out which classes each of them refers to, either in method and field signatures or
+ * as named superclasses. A model file is only parsed once one of the classes it refers to is looked
+ * up in the model. The modeled types and the excluded classes are recorded by the scan, so they are
+ * known without parsing any file.
+ */
+public class LazyModelLoader {
+  private static final String TYPE = "([A-Za-z][\\w.$\\[\\]]*)";
+  private static final Pattern COMMENT_PATTERN = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+  private static final Pattern CLASS_PATTERN = Pattern.compile("\\bclass\\s+" + TYPE + "\\s*\\{");
+  private static final Pattern EXCLUDE_PATTERN = Pattern.compile("\\bexclude\\s+" + TYPE + "\\s*;");
+  private static final Pattern SIGNATURE_PATTERN = Pattern.compile("<" + TYPE + ": ");
+  private static final Pattern SUPERCLASS_PATTERN = Pattern.compile("\\bsuper\\s+\\w+\\s*=\\s*"
+      + TYPE + "\\s*;");
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final Map<String, List<File>> classToFiles = new HashMap<>();
+  private final Set<String> modeledTypes = new HashSet<>();
+  private final Set<String> excludedClasses = new HashSet<>();
+  private final Set<File> parsedFiles = new HashSet<>();
+  private final Set<String> loadedClasses = Collections
+      .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * Indexes a sequence of paths, which can either be directories or files. They should be separated
+   * by the platform's path separator.
+   * 
+   * @param modelPaths A sequence of paths to model files or directories.
+   * @throws IOException if something goes wrong with the file operations.
+   */
+  public LazyModelLoader(String modelPaths) throws IOException {
+    for (String modelPath : modelPaths.split(File.pathSeparator)) {
+      File file = new File(modelPath);
+      if (file.isDirectory()) {
+        try (DirectoryStream<Path> stream =
+            Files.newDirectoryStream(Paths.get(modelPath), "*.model")) {
+          for (Path path : stream) {
+            indexFile(path.toFile());
+          }
+        }
+      } else {
+        indexFile(file);
+      }
+    }
+
+    logger.info("Indexed " + classToFiles.size() + " classes in lazily loaded model");
+  }
+
+  /**
+   * Returns the types declared in the model files.
+   * 
+   * @return The modeled types.
+   */
+  public Set<String> getModeledTypes() {
+    return modeledTypes;
+  }
+
+  /**
+   * Returns the classes excluded in the model files.
+   * 
+   * @return The excluded classes.
+   */
+  public Set<String> getExcludedClasses() {
+    return excludedClasses;
+  }
+
+  /**
+   * Makes sure that all model files that refer to a class have been parsed into a model.
+   * 
+   * @param model The model to populate.
+   * @param className A fully-qualified class name.
+   */
+  public void ensureLoaded(Model model, String className) {
+    if (loadedClasses.contains(className)) {
+      return;
+    }
+
+    synchronized (this) {
+      List<File> files = classToFiles.get(className);
+      if (files != null) {
+        for (File file : files) {
+          if (parsedFiles.add(file)) {
+            try {
+              PropagationParser.parseModelFromFile(model, file);
+            } catch (FileNotFoundException | ParseException exception) {
+              throw new RuntimeException("Could not load model file " + file, exception);
+            }
+          }
+        }
+      }
+      // The model maps are concurrent, so the set can be updated after they have been populated.
+      loadedClasses.add(className);
+    }
+  }
+
+  /**
+   * Scans a model file for the classes it declares and refers to.
+   * 
+   * @param file A model file.
+   * @throws IOException if something goes wrong with the file operations.
+   */
+  private void indexFile(File file) throws IOException {
+    String content =
+        new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    content = COMMENT_PATTERN.matcher(content).replaceAll(" ");
+
+    Set<String> referencedClasses = new LinkedHashSet<>();
+    Matcher matcher = CLASS_PATTERN.matcher(content);
+    while (matcher.find()) {
+      modeledTypes.add(matcher.group(1));
+    }
+    matcher = EXCLUDE_PATTERN.matcher(content);
+    while (matcher.find()) {
+      excludedClasses.add(matcher.group(1));
+    }
+    matcher = SIGNATURE_PATTERN.matcher(content);
+    while (matcher.find()) {
+      referencedClasses.add(matcher.group(1));
+    }
+    matcher = SUPERCLASS_PATTERN.matcher(content);
+    while (matcher.find()) {
+      referencedClasses.add(matcher.group(1));
+    }
+
+    for (String referencedClass : referencedClasses) {
+      List<File> files = classToFiles.get(referencedClass);
+      if (files == null) {
+        files = new ArrayList<>();
+        classToFiles.put(referencedClass, files);
+      }
+      files.add(file);
+    }
+  }
+}
@@ -1,6 +1,13 @@
 package edu.psu.cse.siis.coal;
 
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class Main {
+  private static final Logger logger = LoggerFactory.getLogger(Main.class);
+
   public static void main(String[] args) {
     DefaultAnalysis<DefaultCommandLineArguments> analysis = new DefaultAnalysis<>();
     DefaultCommandLineParser parser = new DefaultCommandLineParser();
@@ -9,6 +16,16 @@ public class Main {
     if (commandLineArguments == null) {
       return;
     }
+    if (commandLineArguments.hasOption("server")) {
+      AnalysisServer<DefaultCommandLineArguments> server =
+          new AnalysisServer<>(analysis, parser, DefaultCommandLineArguments.class, args);
+      try {
+        server.start(commandLineArguments);
+      } catch (FatalAnalysisException | IOException e) {
+        logger.error("Analysis server error", e);
+      }
+      return;
+    }
     analysis.performAnalysis(commandLineArguments);
   }
 }
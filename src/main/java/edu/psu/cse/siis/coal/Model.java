@@ -18,6 +18,8 @@
  */
 package edu.psu.cse.siis.coal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -25,11 +27,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,12 +45,14 @@ import soot.Scene;
 import soot.SootClass;
 import soot.SootMethod;
 import soot.SootMethodRef;
+import soot.Type;
 import soot.Value;
 import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InterfaceInvokeExpr;
 import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
 import edu.psu.cse.siis.coal.arguments.Argument;
+import edu.psu.cse.siis.coal.field.FieldLayout;
 import edu.psu.cse.siis.coal.lang.ParseException;
 import edu.psu.cse.siis.coal.lang.PropagationParser;
 
@@ -66,6 +75,76 @@ public class Model implements Serializable {
   private Map<String, Argument[]> staticFieldToArgumentsMap = new HashMap<>();
   private Map<String, MethodDescription> queryToMethodDescriptionMap = new HashMap<>();
   private Set<String> excludedClasses = new HashSet<>();
+  private Map<String, List<String>> modeledTypeFields = new HashMap<>();
+  private Map<String, Integer> valueLimits = new HashMap<>();
+
+  /**
+   * Incremented whenever fields or value limits are added, so that resolved limits can be
+   * invalidated while a lazily loaded model is populated.
+   */
+  private transient volatile int valueLimitsVersion;
+
+  /**
+   * Index from resolved method invocations to model arguments. It is filled lazily once the Scene
+   * is loaded and avoids building signature strings and querying the class hierarchy repeatedly for
+   * the same invoked method. Missing arguments are recorded as {@link #NO_ARGUMENTS}.
+   */
+  private transient Map<ResolvedMethodKey, Argument[]> resolvedMethodIndex =
+      new ConcurrentHashMap<>();
+
+  private static final Argument[] NO_ARGUMENTS = new Argument[0];
+
+  /**
+   * The loader for lazily loaded models, or null if the model was fully loaded.
+   */
+  private transient LazyModelLoader lazyModelLoader;
+
+  /**
+   * The origin of each entry added through {@link #merge}, used to report conflicts.
+   */
+  private transient Map<String, String> entryOrigins;
+
+  /**
+   * Key for the resolved method index. The result of a lookup only depends on the description map
+   * that is looked up, the invoked method, the static type of the base of the invocation and
+   * whether the invocation is an interface invocation.
+   */
+  private static final class ResolvedMethodKey {
+    private final Map<String, MethodDescription> descriptionMap;
+    private final SootMethod method;
+    private final Type baseType;
+    private final boolean interfaceInvoke;
+    private final int hashCode;
+
+    public ResolvedMethodKey(Map<String, MethodDescription> descriptionMap, SootMethod method,
+        Type baseType, boolean interfaceInvoke) {
+      this.descriptionMap = descriptionMap;
+      this.method = method;
+      this.baseType = baseType;
+      this.interfaceInvoke = interfaceInvoke;
+      this.hashCode =
+          31 * (31 * (31 * System.identityHashCode(descriptionMap) + method.hashCode())
+              + (baseType == null ? 0 : baseType.hashCode())) + (interfaceInvoke ? 1 : 0);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other instanceof ResolvedMethodKey) {
+        ResolvedMethodKey resolvedMethodKey = (ResolvedMethodKey) other;
+        return this.descriptionMap == resolvedMethodKey.descriptionMap
+            && this.method == resolvedMethodKey.method
+            && (this.baseType == null ? resolvedMethodKey.baseType == null : this.baseType
+                .equals(resolvedMethodKey.baseType))
+            && this.interfaceInvoke == resolvedMethodKey.interfaceInvoke;
+      }
+      return false;
+    }
+  }
 
   /**
    * Returns the singleton instance of this class. This class should be first initialized using
@@ -82,6 +161,24 @@ public class Model implements Serializable {
     return instance;
   }
 
+  /**
+   * Returns the singleton instance of this class, or null if it was not initialized.
+   * 
+   * @return The singleton instance, or null.
+   */
+  static Model getInstance() {
+    return instance;
+  }
+
+  /**
+   * Replaces the singleton instance. This is used by tests.
+   * 
+   * @param model The new singleton instance, or null.
+   */
+  static void setInstance(Model model) {
+    instance = model;
+  }
+
   /**
    * Returns the set of all fully-qualified types modeled using COAL.
    * 
@@ -132,6 +229,110 @@ public class Model implements Serializable {
     instance.endInitialization();
   }
 
+  /**
+   * Prepares a COAL model that is loaded on demand from a sequence of paths, which can either be
+   * directories or files. The model files are only indexed by this method. Each file is parsed the
+   * first time one of the classes it refers to is looked up. There is no need to call
+   * {@link #endInitialization()} after this.
+   * 
+   * @param modelPaths A sequence of paths to model files or directories.
+   * @throws IOException if something goes wrong with the file operations.
+   * @see LazyModelLoader
+   */
+  public static void loadModelLazily(String modelPaths) throws IOException {
+    Model model = new Model();
+    model.lazyModelLoader = new LazyModelLoader(modelPaths);
+
+    // Files are parsed while the model is being queried by the solver threads.
+    model.modeledTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    model.modeledTypes.addAll(model.lazyModelLoader.getModeledTypes());
+    model.excludedClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    model.excludedClasses.addAll(model.lazyModelLoader.getExcludedClasses());
+    model.signatureToArgumentsMap = new ConcurrentHashMap<>();
+    model.genSignatureToArgumentsMap = new ConcurrentHashMap<>();
+    model.copySignatureToArgumentsMap = new ConcurrentHashMap<>();
+    model.sourceSignatureToArgumentsMap = new ConcurrentHashMap<>();
+    model.copyConstructors = new ConcurrentHashMap<>();
+    model.staticFieldToArgumentsMap = new ConcurrentHashMap<>();
+    model.queryToMethodDescriptionMap = new ConcurrentHashMap<>();
+    model.modeledTypeFields = new ConcurrentHashMap<>();
+    model.valueLimits = new ConcurrentHashMap<>();
+
+    instance = model;
+  }
+
+  /**
+   * Creates an empty model that is not the singleton instance. This is used to parse model files
+   * separately before merging them into the singleton instance using {@link #merge}.
+   * 
+   * @return An empty model.
+   */
+  public static Model newPartialModel() {
+    return new Model();
+  }
+
+  /**
+   * Merges a partial model into this model. Declarations from the partial model replace previous
+   * declarations with the same signature, which are reported as conflicts.
+   * 
+   * @param partialModel A partial model, usually obtained by parsing a single model file.
+   * @param origin A description of where the partial model comes from, such as a file name.
+   * @return A description of each conflicting declaration, or an empty list if there is none.
+   */
+  public List<String> merge(Model partialModel, String origin) {
+    if (entryOrigins == null) {
+      entryOrigins = new HashMap<>();
+    }
+    List<String> conflicts = new ArrayList<>();
+
+    modeledTypes.addAll(partialModel.modeledTypes);
+    mergeEntries("modifier", signatureToArgumentsMap, partialModel.signatureToArgumentsMap,
+        origin, conflicts);
+    mergeEntries("gen modifier", genSignatureToArgumentsMap,
+        partialModel.genSignatureToArgumentsMap, origin, conflicts);
+    mergeEntries("copy modifier", copySignatureToArgumentsMap,
+        partialModel.copySignatureToArgumentsMap, origin, conflicts);
+    mergeEntries("source", sourceSignatureToArgumentsMap,
+        partialModel.sourceSignatureToArgumentsMap, origin, conflicts);
+    mergeEntries("query", queryToMethodDescriptionMap, partialModel.queryToMethodDescriptionMap,
+        origin, conflicts);
+    mergeEntries("copy constructor", copyConstructors, partialModel.copyConstructors, origin,
+        conflicts);
+    mergeEntries("constant", staticFieldToArgumentsMap, partialModel.staticFieldToArgumentsMap,
+        origin, conflicts);
+    excludedClasses.addAll(partialModel.excludedClasses);
+    for (Map.Entry<String, List<String>> entry : partialModel.modeledTypeFields.entrySet()) {
+      for (String field : entry.getValue()) {
+        addField(entry.getKey(), field);
+      }
+    }
+    valueLimits.putAll(partialModel.valueLimits);
+    ++valueLimitsVersion;
+
+    return conflicts;
+  }
+
+  /**
+   * Merges the entries of a partial model map into a map of this model.
+   * 
+   * @param kind The kind of declaration, for conflict reports.
+   * @param target The map of this model.
+   * @param source The map of the partial model.
+   * @param origin The origin of the partial model.
+   * @param conflicts The list to which conflicts should be added.
+   */
+  private <V> void mergeEntries(String kind, Map<String, V> target, Map<String, V> source,
+      String origin, List<String> conflicts) {
+    for (Map.Entry<String, V> entry : source.entrySet()) {
+      String previousOrigin = entryOrigins.put(kind + " " + entry.getKey(), origin);
+      if (target.put(entry.getKey(), entry.getValue()) != null) {
+        conflicts.add("Duplicate " + kind + " " + entry.getKey() + " in " + origin
+            + " (previously declared in "
+            + (previousOrigin == null ? "another model" : previousOrigin) + ")");
+      }
+    }
+  }
+
   /**
    * Loads the COAL model from a single file. This can be called multiple times. After all COAL
    * files have been loaded, method {@link #endInitialization()} should be called.
@@ -150,11 +351,12 @@ public class Model implements Serializable {
   }
 
   /**
-   * Loads the COAL model from a compiled COAL file. For the moment, this is simply a serialized
-   * Model object. There is no need to call {@link #endInitialization()} after this. This method can
-   * read a serialized file from inside a jar archive, on the condition that the path to the file
-   * starts with <code>/res/</code>. Compiling the model can be done using the {@link ModelCompiler}
-   * class.
+   * Loads the COAL model from a compiled COAL file. The file can either be in the binary format
+   * described in {@link CompiledModelFormat}, or be a serialized Model object produced by earlier
+   * versions of {@link ModelCompiler}. The format is detected automatically. There is no need to
+   * call {@link #endInitialization()} after this. This method can read a compiled file from inside
+   * a jar archive, on the condition that the path to the file starts with <code>/res/</code>.
+   * Other files are memory-mapped.
    * 
    * @param compiledModelFilePath The path to a compiled model file.
    * @throws IOException if something goes wrong with the file operations.
@@ -162,15 +364,52 @@ public class Model implements Serializable {
    */
   public static void loadModelFromCompiledFile(String compiledModelFilePath) throws IOException,
       ClassNotFoundException {
-    InputStream inputStream;
-    if (compiledModelFilePath.startsWith("/res/")) {
-      inputStream = Model.class.getResourceAsStream(compiledModelFilePath);
+    boolean isResource = compiledModelFilePath.startsWith("/res/");
+    ByteBuffer buffer;
+    if (isResource) {
+      buffer = ByteBuffer.wrap(readResource(compiledModelFilePath));
     } else {
-      inputStream = new FileInputStream(compiledModelFilePath);
+      try (FileInputStream fileInputStream = new FileInputStream(compiledModelFilePath);
+          FileChannel fileChannel = fileInputStream.getChannel()) {
+        buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+      }
+    }
+
+    if (CompiledModelFormat.isCompiledModel(buffer)) {
+      Model model = new Model();
+      CompiledModelFormat.read(buffer, model);
+      model.endInitialization();
+      instance = model;
+    } else {
+      InputStream inputStream =
+          isResource ? new ByteArrayInputStream(buffer.array()) : new FileInputStream(
+              compiledModelFilePath);
+      try (ObjectInputStream objectInputStream = new ObjectInputStream(inputStream)) {
+        instance = (Model) objectInputStream.readObject();
+      }
     }
+  }
 
-    ObjectInputStream objectInputStream = new ObjectInputStream(inputStream);
-    instance = (Model) objectInputStream.readObject();
+  /**
+   * Reads a resource into a byte array.
+   * 
+   * @param path The path to the resource.
+   * @return The content of the resource.
+   * @throws IOException if the resource cannot be found or read.
+   */
+  private static byte[] readResource(String path) throws IOException {
+    try (InputStream inputStream = Model.class.getResourceAsStream(path)) {
+      if (inputStream == null) {
+        throw new FileNotFoundException("Could not find resource " + path);
+      }
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int length;
+      while ((length = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, length);
+      }
+      return outputStream.toByteArray();
+    }
   }
 
   /**
@@ -224,6 +463,7 @@ public class Model implements Serializable {
    *         null otherwise.
    */
   public Argument[] getArgumentsForCopyConstructor(String signature) {
+    ensureLoadedForSignature(signature);
     return copyConstructors.get(signature);
   }
 
@@ -260,12 +500,18 @@ public class Model implements Serializable {
       SootMethod method = invokeExpr.getMethod();
       if (AnalysisParameters.v().isAnalysisClass(method.getDeclaringClass().getName())
           && method.isConcrete() && method.hasActiveBody()) {
-        MethodDescription description = queryToMethodDescriptionMap.get(method.getSignature());
-        if (description == null) {
-          return null;
-        } else {
-          return description.getArguments();
+        // Only exact signature matches are considered, which is the same as the lookup for an
+        // interface invocation.
+        ResolvedMethodKey key =
+            new ResolvedMethodKey(queryToMethodDescriptionMap, method, null, true);
+        Argument[] arguments = resolvedMethodIndex.get(key);
+        if (arguments == null) {
+          ensureLoadedForInvokeExpr(invokeExpr);
+          MethodDescription description = queryToMethodDescriptionMap.get(method.getSignature());
+          arguments = description == null ? NO_ARGUMENTS : description.getArguments();
+          resolvedMethodIndex.put(key, arguments);
         }
+        return arguments == NO_ARGUMENTS ? null : arguments;
       }
       return getArgumentsFromMethodDescription(queryToMethodDescriptionMap, invokeExpr);
     }
@@ -281,6 +527,7 @@ public class Model implements Serializable {
    * @return An array of arguments if the statement is for a COAL constant, null otherwise.
    */
   public Argument[] getArgumentsForStaticField(String signature) {
+    ensureLoadedForSignature(signature);
     return staticFieldToArgumentsMap.get(signature);
   }
 
@@ -294,6 +541,36 @@ public class Model implements Serializable {
   private Argument[] getArgumentsFromMethodDescription(
       Map<String, MethodDescription> signatureToMethodDescriptionMap, InvokeExpr invokeExpr) {
     SootMethod method = invokeExpr.getMethod();
+    boolean interfaceInvoke = invokeExpr instanceof InterfaceInvokeExpr;
+    Type baseType = null;
+    if (invokeExpr instanceof InstanceInvokeExpr && !interfaceInvoke) {
+      baseType = ((InstanceInvokeExpr) invokeExpr).getBase().getType();
+    }
+    ResolvedMethodKey key =
+        new ResolvedMethodKey(signatureToMethodDescriptionMap, method, baseType, interfaceInvoke);
+
+    Argument[] arguments = resolvedMethodIndex.get(key);
+    if (arguments == null) {
+      ensureLoadedForInvokeExpr(invokeExpr);
+      arguments =
+          resolveArgumentsFromMethodDescription(signatureToMethodDescriptionMap, invokeExpr);
+      resolvedMethodIndex.put(key, arguments == null ? NO_ARGUMENTS : arguments);
+    }
+
+    return arguments == NO_ARGUMENTS ? null : arguments;
+  }
+
+  /**
+   * Looks up the arguments associated with a method descriptor using method signatures and the
+   * class hierarchy.
+   * 
+   * @param signatureToMethodDescriptionMap A map from signatures to method descriptors.
+   * @param invokeExpr An invoke expression.
+   * @return An array of arguments if arguments are found for the method descriptor, null otherwise.
+   */
+  private Argument[] resolveArgumentsFromMethodDescription(
+      Map<String, MethodDescription> signatureToMethodDescriptionMap, InvokeExpr invokeExpr) {
+    SootMethod method = invokeExpr.getMethod();
     String signature = method.getSignature();
     MethodDescription methodDescription = signatureToMethodDescriptionMap.get(signature);
     if (methodDescription != null) {
@@ -326,6 +603,49 @@ public class Model implements Serializable {
     }
   }
 
+  /**
+   * Makes sure that the parts of a lazily loaded model that may match an invocation have been
+   * loaded. These are the parts that refer to the declaring class of the invoked method or to any
+   * superclass of the base type.
+   * 
+   * @param invokeExpr An invoke expression.
+   */
+  private void ensureLoadedForInvokeExpr(InvokeExpr invokeExpr) {
+    if (lazyModelLoader == null) {
+      return;
+    }
+
+    SootMethod method = invokeExpr.getMethod();
+    lazyModelLoader.ensureLoaded(this, method.getDeclaringClass().getName());
+
+    SootClass baseClass = method.getDeclaringClass();
+    if (invokeExpr instanceof InstanceInvokeExpr) {
+      String baseType = ((InstanceInvokeExpr) invokeExpr).getBase().getType().toString();
+      baseClass = Scene.v().containsClass(baseType) ? Scene.v().getSootClass(baseType) : null;
+    }
+    while (baseClass != null) {
+      lazyModelLoader.ensureLoaded(this, baseClass.getName());
+      baseClass = baseClass.hasSuperclass() ? baseClass.getSuperclass() : null;
+    }
+  }
+
+  /**
+   * Makes sure that the parts of a lazily loaded model that refer to the class of a method or field
+   * signature have been loaded.
+   * 
+   * @param signature A signature of the form &lt;class: ...&gt;.
+   */
+  private void ensureLoadedForSignature(String signature) {
+    if (lazyModelLoader == null) {
+      return;
+    }
+
+    int colonIndex = signature.indexOf(':');
+    if (signature.startsWith("<") && colonIndex > 0) {
+      lazyModelLoader.ensureLoaded(this, signature.substring(1, colonIndex));
+    }
+  }
+
   /**
    * Determines if the class is excluded from the analysis results. This can be used when processing
    * the results results to avoid reporting results for a certain class. This does not prevent the
@@ -348,6 +668,67 @@ public class Model implements Serializable {
     modeledTypes.add(type);
   }
 
+  /**
+   * Adds a field to a modeled type. Fields are recorded in declaration order.
+   * 
+   * @param type A fully-qualified class type.
+   * @param field The name of a field of the type.
+   */
+  public void addField(String type, String field) {
+    // Slots are assigned at load time, so that the fields of a type have neighboring slots.
+    FieldLayout.getSlot(field);
+    List<String> fields = modeledTypeFields.get(type);
+    if (fields == null || !fields.contains(field)) {
+      // Lists are replaced rather than modified, since lazily loaded models are read concurrently.
+      List<String> newFields =
+          fields == null ? new ArrayList<String>(1) : new ArrayList<String>(fields);
+      newFields.add(field);
+      modeledTypeFields.put(type, Collections.unmodifiableList(newFields));
+      ++valueLimitsVersion;
+    }
+  }
+
+  /**
+   * Returns the fields of the modeled types.
+   * 
+   * @return A map from fully-qualified types to their fields, in declaration order.
+   */
+  public Map<String, List<String>> getModeledTypeFields() {
+    return modeledTypeFields;
+  }
+
+  /**
+   * Sets the maximum number of path values of the values of a modeled type, or of the values in
+   * which a field of that type is set.
+   * 
+   * @param type A fully-qualified class type.
+   * @param field The name of a field of the type, or null if the limit applies to the whole type.
+   * @param limit The maximum number of path values.
+   * @see ValueLimits
+   */
+  public void addValueLimit(String type, String field, int limit) {
+    valueLimits.put(ValueLimits.makeKey(type, field), limit);
+    ++valueLimitsVersion;
+  }
+
+  /**
+   * Returns the value limits declared in the model.
+   * 
+   * @return A map from limit keys, as returned by {@link ValueLimits#makeKey}, to limits.
+   */
+  public Map<String, Integer> getValueLimits() {
+    return valueLimits;
+  }
+
+  /**
+   * Returns a number that changes whenever fields or value limits are added to the model.
+   * 
+   * @return The version of the fields and value limits.
+   */
+  int getValueLimitsVersion() {
+    return valueLimitsVersion;
+  }
+
   /**
    * Adds a COAL modifier.
    * 
@@ -429,6 +810,11 @@ public class Model implements Serializable {
    * other modification to the model should be performed after calling this method.
    */
   public void endInitialization() {
+    if (lazyModelLoader != null) {
+      // Lazily loaded models keep being populated during the analysis.
+      clearResolvedMethodIndex();
+      return;
+    }
     modeledTypes = Collections.unmodifiableSet(modeledTypes);
     signatureToArgumentsMap = Collections.unmodifiableMap(signatureToArgumentsMap);
     genSignatureToArgumentsMap = Collections.unmodifiableMap(genSignatureToArgumentsMap);
@@ -438,6 +824,68 @@ public class Model implements Serializable {
     staticFieldToArgumentsMap = Collections.unmodifiableMap(staticFieldToArgumentsMap);
     queryToMethodDescriptionMap = Collections.unmodifiableMap(queryToMethodDescriptionMap);
     excludedClasses = Collections.unmodifiableSet(excludedClasses);
+    modeledTypeFields = Collections.unmodifiableMap(modeledTypeFields);
+    valueLimits = Collections.unmodifiableMap(valueLimits);
+    entryOrigins = null;
+    clearResolvedMethodIndex();
+  }
+
+  Map<String, MethodDescription> getModifiers() {
+    return signatureToArgumentsMap;
+  }
+
+  Map<String, MethodDescription> getGenModifiers() {
+    return genSignatureToArgumentsMap;
+  }
+
+  Map<String, MethodDescription> getCopyModifiers() {
+    return copySignatureToArgumentsMap;
+  }
+
+  Map<String, MethodDescription> getSources() {
+    return sourceSignatureToArgumentsMap;
+  }
+
+  Map<String, MethodDescription> getQueries() {
+    return queryToMethodDescriptionMap;
+  }
+
+  Map<String, Argument[]> getCopyConstructors() {
+    return copyConstructors;
+  }
+
+  Map<String, Argument[]> getConstants() {
+    return staticFieldToArgumentsMap;
+  }
+
+  Set<String> getExcludedClasses() {
+    return excludedClasses;
+  }
+
+  /**
+   * Clears the index from resolved methods to model arguments. This should be called whenever the
+   * Scene is reset, since the index refers to Soot methods and types.
+   */
+  public void clearResolvedMethodIndex() {
+    resolvedMethodIndex.clear();
+  }
+
+  private void readObject(ObjectInputStream objectInputStream) throws IOException,
+      ClassNotFoundException {
+    objectInputStream.defaultReadObject();
+    resolvedMethodIndex = new ConcurrentHashMap<>();
+    // Models serialized before fields and value limits were recorded.
+    if (modeledTypeFields == null) {
+      modeledTypeFields = Collections.emptyMap();
+    }
+    for (List<String> fields : modeledTypeFields.values()) {
+      for (String field : fields) {
+        FieldLayout.getSlot(field);
+      }
+    }
+    if (valueLimits == null) {
+      valueLimits = Collections.emptyMap();
+    }
   }
 
   @Override
@@ -18,10 +18,11 @@
  */
 package edu.psu.cse.siis.coal;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,8 +30,9 @@ import org.slf4j.LoggerFactory;
 import edu.psu.cse.siis.coal.lang.ParseException;
 
 /**
- * Compiler for COAL model. This class simply serializes COAL models. It should be called with the
- * input directory as the first argument and the destination file as the second argument.
+ * Compiler for COAL model. This class writes COAL models in the format described in
+ * {@link CompiledModelFormat}. It should be called with the input directory as the first argument
+ * and the destination file as the second argument.
  */
 public class ModelCompiler {
   private static Logger logger = LoggerFactory.getLogger(ModelCompiler.class);
@@ -54,10 +56,8 @@ public class ModelCompiler {
 
     File outputFile = new File(outputPath);
     outputFile.getParentFile().mkdirs();
-    FileOutputStream fileOutputStream = new FileOutputStream(outputFile);
-    ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);
-    objectOutputStream.writeObject(Model.v());
-    objectOutputStream.close();
-    fileOutputStream.close();
+    try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+      CompiledModelFormat.write(Model.v(), outputStream);
+    }
   }
 }
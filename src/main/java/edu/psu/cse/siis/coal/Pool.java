@@ -18,24 +18,340 @@
  */
 package edu.psu.cse.siis.coal;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A pool of interned values. Equal values that are interned in the same pool are represented by a
+ * single canonical instance. Interned values should be immutable and have stable hash codes.
+ * 
+ * All pools share a global {@link Mode}, which determines how long canonical instances are kept.
+ * Pools record the number of hits and misses since the beginning of the current analysis. Pools
+ * catch up with the beginning of a new analysis the next time they are used, so they do not need
+ * to be reachable from a global registry. Registered pools are only referenced weakly by the
+ * registry, which is used to report statistics.
+ * 
+ * @param <T> The type of the pooled values.
+ */
 public class Pool<T> {
-  private final ConcurrentMap<T, T> pool = new ConcurrentHashMap<>();
+  /**
+   * The retention policy of the pools.
+   */
+  public enum Mode {
+    /**
+     * Canonical instances are kept for the lifetime of the JVM.
+     */
+    STRONG,
+    /**
+     * Canonical instances are only kept while they are referenced outside of the pool.
+     */
+    WEAK,
+    /**
+     * Canonical instances are kept until the beginning of the next analysis.
+     */
+    PER_ANALYSIS
+  }
+
+  private static final Set<Pool<?>> POOLS = Collections.newSetFromMap(
+      new WeakHashMap<Pool<?>, Boolean>());
+  private static volatile Mode mode = Mode.STRONG;
+  /**
+   * The number of analyses that have begun, and the last one at the beginning of which pool values
+   * were cleared.
+   */
+  private static volatile int analysisCount = 0;
+  private static volatile int clearedAnalysis = 0;
+
+  private final String name;
+  private volatile Store<T> store = makeStore(mode);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private volatile int analysis = analysisCount;
+
+  /**
+   * Creates a pool that is registered for statistics.
+   * 
+   * @param name The name of the pool, which is used when reporting statistics.
+   */
+  public Pool(String name) {
+    this(name, true);
+  }
 
+  /**
+   * Creates a pool.
+   * 
+   * @param name The name of the pool.
+   * @param register Whether the pool should be included in {@link #getPools()}.
+   */
+  Pool(String name, boolean register) {
+    this.name = name;
+    if (register) {
+      synchronized (POOLS) {
+        POOLS.add(this);
+      }
+    }
+  }
+
+  /**
+   * Returns the canonical instance of a value. If no equal value is in the pool, the argument is
+   * added to it.
+   * 
+   * @param element A value.
+   * @return The canonical instance that is equal to the argument.
+   */
   public T intern(T element) {
-    T result = pool.putIfAbsent(element, element);
-    if (result == null) {
-      return element;
+    beginCurrentAnalysis();
+    T result = store.intern(element);
+    if (result == element) {
+      misses.incrementAndGet();
     } else {
-      return result;
+      hits.incrementAndGet();
     }
+
+    return result;
   }
 
   public Set<T> getValues() {
-    return new HashSet<T>(pool.values());
+    beginCurrentAnalysis();
+    return store.getValues();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the number of values in this pool. In weak mode, this may include values that have
+   * been garbage collected but not yet removed from the pool.
+   * 
+   * @return The number of values in this pool.
+   */
+  public int size() {
+    beginCurrentAnalysis();
+    return store.size();
+  }
+
+  public long getHits() {
+    beginCurrentAnalysis();
+    return hits.get();
+  }
+
+  public long getMisses() {
+    beginCurrentAnalysis();
+    return misses.get();
+  }
+
+  /**
+   * Removes all values from this pool and resets its statistics.
+   */
+  public void clear() {
+    store = makeStore(mode);
+    hits.set(0);
+    misses.set(0);
+  }
+
+  /**
+   * Removes all values from this pool and removes it from the registered pools. The pool can
+   * still be used afterwards, but it is no longer reported by {@link #getPools()}.
+   */
+  public void close() {
+    synchronized (POOLS) {
+      POOLS.remove(this);
+    }
+    clear();
+  }
+
+  /**
+   * Returns the registered pools that are still reachable, sorted by name.
+   * 
+   * @return The list of pools.
+   */
+  public static List<Pool<?>> getPools() {
+    List<Pool<?>> result;
+    synchronized (POOLS) {
+      result = new ArrayList<Pool<?>>(POOLS);
+    }
+    Collections.sort(result, new Comparator<Pool<?>>() {
+      @Override
+      public int compare(Pool<?> first, Pool<?> second) {
+        return first.name.compareTo(second.name);
+      }
+    });
+
+    return Collections.unmodifiableList(result);
+  }
+
+  public static Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Prepares the pools for a new analysis. If the pool mode changes, or if the mode is
+   * {@link Mode#PER_ANALYSIS}, all pools are cleared. Otherwise only the statistics are reset. This
+   * should only be called when no interned values from a previous analysis are still being used by
+   * the solver.
+   * 
+   * @param newMode The pool mode for the new analysis.
+   */
+  public static synchronized void beginAnalysis(Mode newMode) {
+    boolean clearValues = newMode != mode || newMode == Mode.PER_ANALYSIS;
+    mode = newMode;
+    if (clearValues) {
+      clearedAnalysis = analysisCount + 1;
+    }
+    analysisCount = analysisCount + 1;
+  }
+
+  /**
+   * Clears this pool or resets its statistics if an analysis has begun since it was last used.
+   */
+  private void beginCurrentAnalysis() {
+    int currentAnalysis = analysisCount;
+    if (analysis == currentAnalysis) {
+      return;
+    }
+
+    synchronized (this) {
+      if (analysis != currentAnalysis) {
+        if (analysis < clearedAnalysis) {
+          clear();
+        } else {
+          hits.set(0);
+          misses.set(0);
+        }
+        analysis = currentAnalysis;
+      }
+    }
+  }
+
+  private static <T> Store<T> makeStore(Mode mode) {
+    return mode == Mode.WEAK ? new WeakStore<T>() : new StrongStore<T>();
+  }
+
+  private interface Store<T> {
+    T intern(T element);
+
+    Set<T> getValues();
+
+    int size();
+  }
+
+  private static class StrongStore<T> implements Store<T> {
+    private final ConcurrentMap<T, T> pool = new ConcurrentHashMap<>();
+
+    @Override
+    public T intern(T element) {
+      T result = pool.putIfAbsent(element, element);
+      if (result == null) {
+        return element;
+      } else {
+        return result;
+      }
+    }
+
+    @Override
+    public Set<T> getValues() {
+      return new HashSet<T>(pool.values());
+    }
+
+    @Override
+    public int size() {
+      return pool.size();
+    }
+  }
+
+  /**
+   * A store that only references its values weakly. Entries whose values have been garbage
+   * collected are removed the next time the store is accessed.
+   */
+  private static class WeakStore<T> implements Store<T> {
+    private final ConcurrentMap<WeakEntry<T>, WeakEntry<T>> pool = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+    @Override
+    public T intern(T element) {
+      expungeStaleEntries();
+      WeakEntry<T> entry = new WeakEntry<>(element, queue);
+
+      while (true) {
+        WeakEntry<T> existing = pool.putIfAbsent(entry, entry);
+        if (existing == null) {
+          return element;
+        }
+        T result = existing.get();
+        if (result != null) {
+          return result;
+        }
+        // The existing value was collected after the lookup.
+        pool.remove(existing, existing);
+      }
+    }
+
+    @Override
+    public Set<T> getValues() {
+      expungeStaleEntries();
+      Set<T> result = new HashSet<>();
+      for (WeakEntry<T> entry : pool.keySet()) {
+        T value = entry.get();
+        if (value != null) {
+          result.add(value);
+        }
+      }
+
+      return result;
+    }
+
+    @Override
+    public int size() {
+      expungeStaleEntries();
+      return pool.size();
+    }
+
+    private void expungeStaleEntries() {
+      Object reference;
+      while ((reference = queue.poll()) != null) {
+        pool.remove(reference);
+      }
+    }
+  }
+
+  /**
+   * A weak reference that uses the hash code and equality of its referent. A cleared entry is only
+   * equal to itself.
+   */
+  private static class WeakEntry<T> extends WeakReference<T> {
+    private final int hashCode;
+
+    WeakEntry(T referent, ReferenceQueue<T> queue) {
+      super(referent, queue);
+      this.hashCode = referent.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof WeakEntry)) {
+        return false;
+      }
+      Object referent = get();
+      return referent != null && referent.equals(((WeakEntry<?>) other).get());
+    }
   }
 }
@@ -31,6 +31,9 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import soot.NullType;
 import soot.PointsToAnalysis;
 import soot.Scene;
@@ -39,6 +42,12 @@ import soot.Unit;
 import soot.Value;
 import soot.jimple.internal.JimpleLocal;
 import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import edu.psu.cse.siis.coal.transformers.AllTopEdgeFunction;
 import edu.psu.cse.siis.coal.values.BasePropagationValue;
 
@@ -50,6 +59,8 @@ public class PropagationProblem
     DefaultIDETabulationProblem<Unit, Value, SootMethod, BasePropagationValue, JimpleBasedInterproceduralCFG> {
   public static final EdgeFunction<BasePropagationValue> ALL_TOP = new AllTopEdgeFunction();
 
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
   private final Set<Unit> initialSeeds = new HashSet<Unit>();
   private final PointsToAnalysis pointsToAnalysis = Scene.v().getPointsToAnalysis();
   private JimpleBasedInterproceduralCFG icfg;
@@ -66,9 +77,82 @@ public class PropagationProblem
       new CallToReturnFlowFunctionFactory();
   private ReturnFlowFunctionFactory returnFlowFunctionFactory = new ReturnFlowFunctionFactory();
 
+  /*
+   * Caches for flow and edge functions. The IDE solver only caches functions for the duration of a
+   * single iteration, whereas these caches are kept across iterations. They are null if caching is
+   * disabled. In iterative mode, call-to-return edge functions that use the field transformers of
+   * referenced values depend on the previous iteration. They are kept in a separate cache, which
+   * is cleared at the beginning of each iteration.
+   */
+  private final Cache<FunctionKey, FlowFunction<Value>> flowFunctionCache;
+  private final Cache<FunctionKey, EdgeFunction<BasePropagationValue>> edgeFunctionCache;
+  private final Cache<FunctionKey, EdgeFunction<BasePropagationValue>> iterationEdgeFunctionCache;
+
+  private enum FunctionKind {
+    NORMAL_FLOW, CALL_FLOW, RETURN_FLOW, CALL_TO_RETURN_FLOW, NORMAL_EDGE, CALL_TO_RETURN_EDGE
+  }
+
+  /**
+   * A key for a cached flow or edge function.
+   */
+  private static final class FunctionKey {
+    private final FunctionKind kind;
+    private final Object unit;
+    private final Object successor;
+    private final Object sourceNode;
+    private final Object targetNode;
+    private final int hashCode;
+
+    public FunctionKey(FunctionKind kind, Object unit, Object successor, Object sourceNode,
+        Object targetNode) {
+      this.kind = kind;
+      this.unit = unit;
+      this.successor = successor;
+      this.sourceNode = sourceNode;
+      this.targetNode = targetNode;
+      this.hashCode = Objects.hashCode(kind, unit, successor, sourceNode, targetNode);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other instanceof FunctionKey) {
+        FunctionKey functionKey = (FunctionKey) other;
+        return this.kind == functionKey.kind && Objects.equal(this.unit, functionKey.unit)
+            && Objects.equal(this.successor, functionKey.successor)
+            && Objects.equal(this.sourceNode, functionKey.sourceNode)
+            && Objects.equal(this.targetNode, functionKey.targetNode);
+      }
+      return false;
+    }
+  }
+
   public PropagationProblem(JimpleBasedInterproceduralCFG icfg) {
     super(icfg);
     this.icfg = icfg;
+
+    int functionCacheSize = AnalysisParameters.v().getFunctionCacheSize();
+    if (functionCacheSize > 0) {
+      int concurrencyLevel = Math.max(1, AnalysisParameters.v().getThreadCount());
+      this.flowFunctionCache =
+          CacheBuilder.newBuilder().maximumSize(functionCacheSize)
+              .concurrencyLevel(concurrencyLevel).recordStats().build();
+      this.edgeFunctionCache =
+          CacheBuilder.newBuilder().maximumSize(functionCacheSize)
+              .concurrencyLevel(concurrencyLevel).recordStats().build();
+      this.iterationEdgeFunctionCache =
+          AnalysisParameters.v().isIterative() ? CacheBuilder.newBuilder()
+              .maximumSize(functionCacheSize).concurrencyLevel(concurrencyLevel).recordStats()
+              .<FunctionKey, EdgeFunction<BasePropagationValue>> build() : null;
+    } else {
+      this.flowFunctionCache = null;
+      this.edgeFunctionCache = null;
+      this.iterationEdgeFunctionCache = null;
+    }
   }
 
   public Set<Unit> getInitialSeeds() {
@@ -93,8 +177,16 @@ public class PropagationProblem
       @Override
       public EdgeFunction<BasePropagationValue> getNormalEdgeFunction(Unit curr, Value currNode,
           Unit succ, Value succNode) {
-        return normalEdgeFunctionFactory.getNormalEdgeFunction(curr, currNode, succNode,
-            zeroValue(), pointsToAnalysis);
+        FunctionKey key =
+            new FunctionKey(FunctionKind.NORMAL_EDGE, curr, succ, currNode, succNode);
+        EdgeFunction<BasePropagationValue> result = getCachedFunction(edgeFunctionCache, key);
+        if (result == null) {
+          result =
+              normalEdgeFunctionFactory.getNormalEdgeFunction(curr, currNode, succNode,
+                  zeroValue(), pointsToAnalysis);
+          cacheFunction(edgeFunctionCache, key, result);
+        }
+        return result;
       }
 
       @Override
@@ -123,8 +215,27 @@ public class PropagationProblem
       @Override
       public EdgeFunction<BasePropagationValue> getCallToReturnEdgeFunction(Unit callSite,
           Value callNode, Unit returnSite, Value returnSideNode) {
-        return callToReturnEdgeFunctionFactory.getCallToReturnEdgeFunction(callSite, callNode,
-            returnSite, returnSideNode, pointsToAnalysis);
+        FunctionKey key =
+            new FunctionKey(FunctionKind.CALL_TO_RETURN_EDGE, callSite, returnSite, callNode,
+                returnSideNode);
+        EdgeFunction<BasePropagationValue> result = getCachedFunction(edgeFunctionCache, key);
+        if (result == null) {
+          result = getCachedFunction(iterationEdgeFunctionCache, key);
+        }
+        if (result == null) {
+          int referencedValueRequests = IterationSolver.v().getThreadReferencedValueRequests();
+          result =
+              callToReturnEdgeFunctionFactory.getCallToReturnEdgeFunction(callSite, callNode,
+                  returnSite, returnSideNode, pointsToAnalysis);
+          // Edge functions built from the field transformers of referenced values are only valid
+          // for the current iteration.
+          if (referencedValueRequests == IterationSolver.v().getThreadReferencedValueRequests()) {
+            cacheFunction(edgeFunctionCache, key, result);
+          } else {
+            cacheFunction(iterationEdgeFunctionCache, key, result);
+          }
+        }
+        return result;
       }
     };
   }
@@ -140,30 +251,114 @@ public class PropagationProblem
 
       @Override
       public FlowFunction<Value> getNormalFlowFunction(Unit src, Unit dest) {
-        return normalFlowFunctionFactory.getNormalFlowFunction(src, dest, zeroValue(),
-            pointsToAnalysis);
+        FunctionKey key = new FunctionKey(FunctionKind.NORMAL_FLOW, src, dest, null, null);
+        FlowFunction<Value> result = getCachedFunction(flowFunctionCache, key);
+        if (result == null) {
+          result =
+              normalFlowFunctionFactory.getNormalFlowFunction(src, dest, zeroValue(),
+                  pointsToAnalysis);
+          cacheFunction(flowFunctionCache, key, result);
+        }
+        return result;
       }
 
       @Override
       public FlowFunction<Value> getCallFlowFunction(Unit src, final SootMethod dest) {
-        return callFlowFunctionFactory.getCallFlowFunction(src, dest, zeroValue());
+        FunctionKey key = new FunctionKey(FunctionKind.CALL_FLOW, src, dest, null, null);
+        FlowFunction<Value> result = getCachedFunction(flowFunctionCache, key);
+        if (result == null) {
+          result = callFlowFunctionFactory.getCallFlowFunction(src, dest, zeroValue());
+          cacheFunction(flowFunctionCache, key, result);
+        }
+        return result;
       }
 
       @Override
       public FlowFunction<Value> getReturnFlowFunction(Unit callSite, SootMethod callee,
           Unit exitStmt, Unit retSite) {
-        return returnFlowFunctionFactory.getReturnFlowFunction(callSite, callee, exitStmt, retSite,
-            zeroValue());
+        FunctionKey key =
+            new FunctionKey(FunctionKind.RETURN_FLOW, callSite, retSite, callee, exitStmt);
+        FlowFunction<Value> result = getCachedFunction(flowFunctionCache, key);
+        if (result == null) {
+          result =
+              returnFlowFunctionFactory.getReturnFlowFunction(callSite, callee, exitStmt, retSite,
+                  zeroValue());
+          cacheFunction(flowFunctionCache, key, result);
+        }
+        return result;
       }
 
       @Override
       public FlowFunction<Value> getCallToReturnFlowFunction(Unit call, Unit returnSite) {
-        return callToReturnFlowFunctionFactory.getCallToReturnFlowFunction(call, returnSite,
-            zeroValue(), icfg);
+        FunctionKey key =
+            new FunctionKey(FunctionKind.CALL_TO_RETURN_FLOW, call, returnSite, null, null);
+        FlowFunction<Value> result = getCachedFunction(flowFunctionCache, key);
+        if (result == null) {
+          result =
+              callToReturnFlowFunctionFactory.getCallToReturnFlowFunction(call, returnSite,
+                  zeroValue(), icfg);
+          cacheFunction(flowFunctionCache, key, result);
+        }
+        return result;
       }
     };
   }
 
+  /**
+   * Looks up a function in a cache.
+   * 
+   * @param cache A function cache, or null if caching is disabled.
+   * @param key The function key.
+   * @return The cached function, or null if it is not in the cache.
+   */
+  private static <F> F getCachedFunction(Cache<FunctionKey, F> cache, FunctionKey key) {
+    return cache == null ? null : cache.getIfPresent(key);
+  }
+
+  /**
+   * Adds a function to a cache.
+   * 
+   * @param cache A function cache, or null if caching is disabled.
+   * @param key The function key.
+   * @param function The function.
+   */
+  private static <F> void cacheFunction(Cache<FunctionKey, F> cache, FunctionKey key, F function) {
+    if (cache != null) {
+      cache.put(key, function);
+    }
+  }
+
+  /**
+   * Clears the cached functions that depend on the results of the previous iteration. This should
+   * be called before each iteration.
+   */
+  public void beginIteration() {
+    if (iterationEdgeFunctionCache != null) {
+      iterationEdgeFunctionCache.invalidateAll();
+    }
+  }
+
+  /**
+   * Logs the hit rates of the flow and edge function caches.
+   */
+  public void logCacheStatistics() {
+    if (flowFunctionCache == null) {
+      return;
+    }
+
+    CacheStats flowStats = flowFunctionCache.stats();
+    CacheStats edgeStats = edgeFunctionCache.stats();
+    if (iterationEdgeFunctionCache != null) {
+      edgeStats = edgeStats.plus(iterationEdgeFunctionCache.stats());
+    }
+    logger.info(String.format("Flow function cache: %d hits, %d misses (%.1f%%), %d evictions",
+        flowStats.hitCount(), flowStats.missCount(), flowStats.hitRate() * 100,
+        flowStats.evictionCount()));
+    logger.info(String.format("Edge function cache: %d hits, %d misses (%.1f%%), %d evictions",
+        edgeStats.hitCount(), edgeStats.missCount(), edgeStats.hitRate() * 100,
+        edgeStats.evictionCount()));
+  }
+
   @Override
   public Value createZeroValue() {
     return new JimpleLocal("zero", NullType.v());
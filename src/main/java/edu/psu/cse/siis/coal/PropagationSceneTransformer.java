@@ -20,6 +20,7 @@ package edu.psu.cse.siis.coal;
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +31,7 @@ import soot.SootMethod;
 import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import edu.psu.cse.siis.coal.arguments.ArgumentValueManager;
 import edu.psu.cse.siis.coal.arguments.StringValueAnalysis;
 
 /**
@@ -38,6 +40,13 @@ import edu.psu.cse.siis.coal.arguments.StringValueAnalysis;
 public class PropagationSceneTransformer extends SceneTransformer {
   private static final int MAX_ITERATIONS = 15;
 
+  /**
+   * The context of the analysis that is running. The string analysis library keeps its constraints
+   * in static fields and the resolved method index of the {@link Model} is shared, so analyses
+   * cannot run concurrently.
+   */
+  private static final AtomicReference<AnalysisContext> runningAnalysis = new AtomicReference<>();
+
   private final Logger logger = LoggerFactory.getLogger(getClass());
   private final ResultBuilder resultBuilder;
   private final PropagationSceneTransformerPrinter printer;
@@ -58,9 +67,31 @@ public class PropagationSceneTransformer extends SceneTransformer {
 
   @Override
   protected void internalTransform(String phaseName, @SuppressWarnings("rawtypes") Map options) {
+    if (!runningAnalysis.compareAndSet(null, AnalysisContext.current())) {
+      throw new RuntimeException("Another analysis is running in this JVM. Analyses cannot run "
+          + "concurrently, since the string analysis and the model keep global state.");
+    }
+    try {
+      propagate();
+    } finally {
+      runningAnalysis.set(null);
+    }
+  }
+
+  /**
+   * Solves the propagation problem for the current Scene and adds the result to the results of the
+   * current analysis.
+   */
+  private void propagate() {
     PropagationTimers.v().totalTimer.start();
     PropagationTimers.v().misc.start();
+    Pool.beginAnalysis(AnalysisParameters.v().getPoolMode());
+    // Constraints collected for a previous Scene would be reused otherwise.
+    StringValueAnalysis.resetGlobalState();
     StringValueAnalysis.initialize();
+    Model.v().clearResolvedMethodIndex();
+    CallSiteClassifier.v().classifyReachableCallSites();
+    UnitGraphCache.v().clear();
 
     JimpleBasedInterproceduralCFG iCfg = new PropagationIcfg();
     AnalysisParameters.v().setIcfg(iCfg);
@@ -76,6 +107,7 @@ public class PropagationSceneTransformer extends SceneTransformer {
 
     while (iterationCounter < MAX_ITERATIONS) {
       IterationSolver.v().initialize(solver);
+      problem.beginIteration();
       PropagationTimers.v().misc.end();
 
       PropagationTimers.v().problemGeneration.start();
@@ -88,7 +120,8 @@ public class PropagationSceneTransformer extends SceneTransformer {
       PropagationTimers.v().ideSolution.end();
 
       PropagationTimers.v().misc.start();
-      if (!AnalysisParameters.v().isIterative() || IterationSolver.v().hasFoundFixedPoint()) {
+      if (!AnalysisParameters.v().isIterative()
+          || IterationSolver.v().hasFoundFixedPoint(solver)) {
         iterationCounter = MAX_ITERATIONS;
       } else {
         ++iterationCounter;
@@ -97,8 +130,24 @@ public class PropagationSceneTransformer extends SceneTransformer {
     PropagationTimers.v().misc.end();
 
     logger.info("Reached a fixed point");
+    problem.logCacheStatistics();
+    UnitGraphCache.v().logCacheStatistics();
+    logger.info(PropagationTimers.v().referencedValueContention + " out of "
+        + PropagationTimers.v().referencedValueRequests
+        + " referenced value requests were concurrent with another request");
+    logger.info("Referenced value cache: " + PropagationTimers.v().referencedValueCacheHits
+        + " hits, " + PropagationTimers.v().referencedValueCacheMisses + " misses");
+    logger.info(PropagationTimers.v().getPoolStatistics());
+    logger.info(AnalysisParameters.v().getValueLimits().getStatistics());
 
     Results.addResult(resultBuilder.buildResult(solver));
+    UnitGraphCache.v().clear();
+    logger.info(PropagationTimers.v().argumentValueTimeouts + " argument values timed out and "
+        + PropagationTimers.v().argumentValueTimeLimitSkips
+        + " were skipped after the total time limit");
+    logger.info(PropagationTimers.v().stringValueWidenings
+        + " string values were widened because of their size");
+    logger.info(ArgumentValueManager.v().getTimeBudgetSummary());
 
     PropagationTimers.v().totalTimer.end();
 
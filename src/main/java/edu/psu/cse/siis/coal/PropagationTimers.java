@@ -18,25 +18,23 @@
  */
 package edu.psu.cse.siis.coal;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import soot.Timer;
 
 /**
  * Timers and counters for the execution of the COAL solver.
  */
 public class PropagationTimers {
-  private static PropagationTimers instance = new PropagationTimers();
-
-  private PropagationTimers() {
+  PropagationTimers() {
   }
 
   public static PropagationTimers v() {
-    synchronized (instance) {
-      return instance;
-    }
+    return AnalysisContext.current().getPropagationTimers();
   }
 
   public static void clear() {
-    instance = new PropagationTimers();
+    AnalysisContext.current().clearPropagationTimers();
   }
 
   public Timer modelParsing = new Timer("modelParsing");
@@ -70,4 +68,77 @@ public class PropagationTimers {
   public int pathValues = 0;
 
   public int separatePathValues = 0;
+
+  /**
+   * Number of requests for the field transformers of a referenced value.
+   */
+  public final StripedCounter referencedValueRequests = new StripedCounter();
+
+  /**
+   * Number of requests for the field transformers of a referenced value that were made while
+   * another solver thread was processing such a request.
+   */
+  public final StripedCounter referencedValueContention = new StripedCounter();
+
+  /**
+   * Number of referenced value requests that were answered from the per-iteration cache.
+   */
+  public final StripedCounter referencedValueCacheHits = new StripedCounter();
+
+  /**
+   * Number of referenced value requests for which field transformers had to be generated.
+   */
+  public final StripedCounter referencedValueCacheMisses = new StripedCounter();
+
+  /**
+   * Number of argument values that were replaced with an unknown value because their computation
+   * exceeded its time budget.
+   */
+  public final AtomicInteger argumentValueTimeouts = new AtomicInteger();
+
+  /**
+   * Number of argument values that were replaced with an unknown value without being computed,
+   * because the total time limit for argument values was reached.
+   */
+  public final AtomicInteger argumentValueTimeLimitSkips = new AtomicInteger();
+
+  /**
+   * Number of string values that were widened to prefix patterns or to an unknown value, because
+   * their constraints or their values exceeded the limits of the string analysis or of string
+   * sets.
+   */
+  public final AtomicInteger stringValueWidenings = new AtomicInteger();
+
+  /**
+   * Returns a one-line summary of the timers, in milliseconds, and of the main counters.
+   * 
+   * @return A summary of the timers and counters.
+   */
+  public String getSummary() {
+    return String.format("total=%dms modelParsing=%dms soot=%dms problemGeneration=%dms "
+        + "ideSolution=%dms constantAnalysis=%dms valueComposition=%dms resultGeneration=%dms "
+        + "misc=%dms reachableMethods=%d reachableStatements=%d argumentValueTimeouts=%d "
+        + "argumentValueTimeLimitSkips=%d", totalTimer.getTime(),
+        modelParsing.getTime(), soot.getTime(), problemGeneration.getTime(), ideSolution.getTime(),
+        constantAnalysis.getTime(), valueComposition.getTime(), resultGeneration.getTime(),
+        misc.getTime(), reachableMethods, reachableStatements, argumentValueTimeouts.get(),
+        argumentValueTimeLimitSkips.get());
+  }
+
+  /**
+   * Returns the size and hit rate of each pool of interned values for the current analysis.
+   * 
+   * @return A description of the pool statistics.
+   */
+  public String getPoolStatistics() {
+    StringBuilder result = new StringBuilder("Pools (" + Pool.getMode() + "):");
+    for (Pool<?> pool : Pool.getPools()) {
+      long hits = pool.getHits();
+      long requests = hits + pool.getMisses();
+      result.append(String.format("%n  %s: %d values, %d/%d hits (%.1f%%)", pool.getName(),
+          pool.size(), hits, requests, requests == 0 ? 0.0 : 100.0 * hits / requests));
+    }
+
+    return result.toString();
+  }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.Local;
+import soot.Unit;
+import soot.ValueBox;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.LocalDefs;
+
+/**
+ * The reaching definitions of the locals of a method body. Locals and statements are identified by
+ * identity. Unlike {@link soot.toolkits.scalar.SimpleLocalDefs}, this never renumbers the locals
+ * of the body. Local numbers are used by Spark to look up the points-to sets of locals, so
+ * renumbering them while other threads query the points-to analysis returns wrong results.
+ * 
+ * The definitions are computed in the constructor. After that, instances are not modified and can
+ * be read concurrently.
+ */
+final class ReachingLocalDefs implements LocalDefs {
+  private final Map<Unit, Integer> unitIndices = new IdentityHashMap<>();
+  private final Map<Local, BitSet> localDefinitions = new IdentityHashMap<>();
+  private final List<Unit> definitionUnits = new ArrayList<>();
+  private final BitSet[] reachingDefinitions;
+
+  /**
+   * Computes the reaching definitions of the locals of a method body.
+   * 
+   * @param graph The control flow graph of the body.
+   */
+  ReachingLocalDefs(UnitGraph graph) {
+    List<Unit> units = new ArrayList<>(graph.size());
+    List<List<Local>> definedLocals = new ArrayList<>(graph.size());
+    List<BitSet> generated = new ArrayList<>(graph.size());
+    for (Unit unit : graph) {
+      unitIndices.put(unit, units.size());
+      units.add(unit);
+      List<Local> locals = new ArrayList<>(1);
+      BitSet definitions = new BitSet();
+      for (ValueBox valueBox : unit.getDefBoxes()) {
+        if (valueBox.getValue() instanceof Local) {
+          Local local = (Local) valueBox.getValue();
+          locals.add(local);
+          definitions.set(definitionUnits.size());
+          getDefinitions(local).set(definitionUnits.size());
+          definitionUnits.add(unit);
+        }
+      }
+      definedLocals.add(locals);
+      generated.add(definitions);
+    }
+
+    reachingDefinitions = new BitSet[units.size()];
+    Deque<Integer> worklist = new ArrayDeque<>(units.size());
+    boolean[] queued = new boolean[units.size()];
+    for (int i = 0; i < units.size(); ++i) {
+      reachingDefinitions[i] = new BitSet();
+      worklist.add(i);
+      queued[i] = true;
+    }
+
+    while (!worklist.isEmpty()) {
+      int index = worklist.poll();
+      queued[index] = false;
+      BitSet out = (BitSet) reachingDefinitions[index].clone();
+      for (Local local : definedLocals.get(index)) {
+        out.andNot(localDefinitions.get(local));
+      }
+      out.or(generated.get(index));
+
+      for (Unit successor : graph.getSuccsOf(units.get(index))) {
+        int successorIndex = unitIndices.get(successor);
+        BitSet in = reachingDefinitions[successorIndex];
+        // Definitions are only added, so a change is a change in cardinality.
+        int cardinality = in.cardinality();
+        in.or(out);
+        if (in.cardinality() != cardinality && !queued[successorIndex]) {
+          worklist.add(successorIndex);
+          queued[successorIndex] = true;
+        }
+      }
+    }
+  }
+
+  @Override
+  public List<Unit> getDefsOfAt(Local local, Unit unit) {
+    Integer index = unitIndices.get(unit);
+    if (index == null) {
+      throw new RuntimeException("Statement " + unit + " is not in the control flow graph");
+    }
+    BitSet definitions = localDefinitions.get(local);
+    if (definitions == null) {
+      return Collections.emptyList();
+    }
+
+    BitSet reaching = (BitSet) reachingDefinitions[index].clone();
+    reaching.and(definitions);
+    return toUnits(reaching);
+  }
+
+  @Override
+  public List<Unit> getDefsOf(Local local) {
+    BitSet definitions = localDefinitions.get(local);
+    return definitions == null ? Collections.<Unit>emptyList() : toUnits(definitions);
+  }
+
+  private BitSet getDefinitions(Local local) {
+    BitSet result = localDefinitions.get(local);
+    if (result == null) {
+      result = new BitSet();
+      localDefinitions.put(local, result);
+    }
+    return result;
+  }
+
+  private List<Unit> toUnits(BitSet definitions) {
+    List<Unit> result = new ArrayList<>(definitions.cardinality());
+    for (int i = definitions.nextSetBit(0); i >= 0; i = definitions.nextSetBit(i + 1)) {
+      result.add(definitionUnits.get(i));
+    }
+    return result;
+  }
+}
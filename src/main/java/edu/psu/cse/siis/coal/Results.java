@@ -18,17 +18,17 @@
  */
 package edu.psu.cse.siis.coal;
 
-import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Access to the results of the current {@link AnalysisContext}.
+ */
 public class Results {
-  private static List<Result> results = new ArrayList<>();
-
   public static void addResult(Result result) {
-    results.add(result);
+    AnalysisContext.current().getResults().add(result);
   }
 
   public static List<Result> getResults() {
-    return results;
+    return AnalysisContext.current().getResults();
   }
 }
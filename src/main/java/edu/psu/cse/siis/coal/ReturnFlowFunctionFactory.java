@@ -108,8 +108,9 @@ public class ReturnFlowFunctionFactory {
 
     String declaringClass = callee.getDeclaringClass().getName();
 
-    if (Model.v().getArgumentsForGenMethod(stmt.getInvokeExpr()) != null
-        || Model.v().getArgumentsForCopyConstructor(stmt.getInvokeExpr().getMethodRef()) != null
+    CallSiteClassification classification = CallSiteClassifier.v().getClassification(stmt);
+    if (classification.getGenModifierArguments() != null
+        || classification.getCopyConstructorArguments() != null
         || !AnalysisParameters.v().isAnalysisClass(declaringClass)) {
       if (logger.isDebugEnabled()) {
         logger.debug("Killing all");
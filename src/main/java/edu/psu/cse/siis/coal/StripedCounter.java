@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that is updated by many threads. Each thread updates one of several padded stripes,
+ * so that threads do not write to the same cache line, and reads sum all the stripes. This plays
+ * the role of <code>java.util.concurrent.atomic.LongAdder</code>, which is not available in
+ * Java 7.
+ */
+public class StripedCounter {
+  /**
+   * Number of longs between two stripes, so that stripes are on different cache lines.
+   */
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray cells;
+  private final int mask;
+
+  public StripedCounter() {
+    int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+    this.cells = new AtomicLongArray(stripes * PADDING);
+    this.mask = stripes - 1;
+  }
+
+  /**
+   * Increments the counter.
+   */
+  public void increment() {
+    cells.incrementAndGet(getIndex());
+  }
+
+  /**
+   * Decrements the counter.
+   */
+  public void decrement() {
+    cells.decrementAndGet(getIndex());
+  }
+
+  /**
+   * Returns the value of the counter. Concurrent updates may or may not be included.
+   * 
+   * @return The sum of all stripes.
+   */
+  public long sum() {
+    long result = 0;
+    for (int i = 0; i < cells.length(); i += PADDING) {
+      result += cells.get(i);
+    }
+
+    return result;
+  }
+
+  private int getIndex() {
+    return ((int) Thread.currentThread().getId() & mask) * PADDING;
+  }
+
+  @Override
+  public String toString() {
+    return Long.toString(sum());
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Body;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.scalar.LocalDefs;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+
+/**
+ * A cache of the intraprocedural control flow graphs and reaching definitions of method bodies,
+ * which is shared by the argument value analyses and the result builder. There is one instance per
+ * {@link AnalysisContext}.
+ * 
+ * Bodies are compared by identity. Graphs and definitions refer to their bodies, so they are not
+ * discarded along with the bodies. Instead, each cache is bounded by the total number of statements
+ * in the cached bodies, and the caches are cleared at the beginning and at the end of each analysis
+ * (see {@link #clear()}). Graphs and definitions are not modified after their construction and can
+ * be read concurrently.
+ */
+public class UnitGraphCache {
+  private static final long MAXIMUM_STATEMENTS = 1000000;
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private volatile LoadingCache<Body, ExceptionalUnitGraph> graphs = makeGraphCache();
+  private volatile LoadingCache<Body, LocalDefs> localDefs = makeLocalDefsCache();
+
+  UnitGraphCache() {
+  }
+
+  /**
+   * Returns the instance for the current {@link AnalysisContext}.
+   * 
+   * @return The instance for the current analysis context.
+   */
+  public static UnitGraphCache v() {
+    return AnalysisContext.current().getUnitGraphCache();
+  }
+
+  /**
+   * Returns the control flow graph of a method body. The graph is built if it is not in the cache.
+   * 
+   * @param body A method body.
+   * @return The control flow graph of the body.
+   */
+  public ExceptionalUnitGraph getGraph(Body body) {
+    return graphs.getUnchecked(body);
+  }
+
+  /**
+   * Returns the reaching definitions of the locals of a method body. They are computed once on the
+   * control flow graph of the body, after which the definitions of a local that reach a statement
+   * are found without further analysis. Computing them does not modify the body, so this can be
+   * called while other threads query the points-to analysis.
+   * 
+   * @param body A method body.
+   * @return The local definitions of the body.
+   */
+  public LocalDefs getLocalDefs(Body body) {
+    return localDefs.getUnchecked(body);
+  }
+
+  /**
+   * Discards all cached graphs and definitions. This should be called when method bodies may have
+   * been modified, and when the graphs are not needed anymore, so that they do not keep the bodies
+   * of a previous Scene reachable.
+   */
+  public void clear() {
+    graphs = makeGraphCache();
+    localDefs = makeLocalDefsCache();
+  }
+
+  /**
+   * Logs the hit rates of the caches.
+   */
+  public void logCacheStatistics() {
+    CacheStats graphStats = graphs.stats();
+    CacheStats localDefsStats = localDefs.stats();
+    logger.info(String.format("Control flow graph cache: %d hits, %d misses (%.1f%%), "
+        + "%d evictions", graphStats.hitCount(), graphStats.missCount(),
+        graphStats.hitRate() * 100, graphStats.evictionCount()));
+    logger.info(String.format("Local definition cache: %d hits, %d misses (%.1f%%), "
+        + "%d evictions", localDefsStats.hitCount(), localDefsStats.missCount(),
+        localDefsStats.hitRate() * 100, localDefsStats.evictionCount()));
+  }
+
+  private static LoadingCache<Body, ExceptionalUnitGraph> makeGraphCache() {
+    return makeCache(new CacheLoader<Body, ExceptionalUnitGraph>() {
+      @Override
+      public ExceptionalUnitGraph load(Body body) {
+        return new ExceptionalUnitGraph(body);
+      }
+    });
+  }
+
+  private LoadingCache<Body, LocalDefs> makeLocalDefsCache() {
+    return makeCache(new CacheLoader<Body, LocalDefs>() {
+      @Override
+      public LocalDefs load(Body body) {
+        return new ReachingLocalDefs(getGraph(body));
+      }
+    });
+  }
+
+  private static <V> LoadingCache<Body, V> makeCache(CacheLoader<Body, V> loader) {
+    return CacheBuilder.newBuilder().maximumWeight(MAXIMUM_STATEMENTS)
+        .weigher(new Weigher<Body, V>() {
+          @Override
+          public int weigh(Body body, V value) {
+            return body.getUnits().size();
+          }
+        }).recordStats().build(loader);
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The maximum number of path values in COAL values and transformers, beyond which they are replaced
+ * with top. There is a default limit, which can be overridden for a modeled type or for a field of
+ * a modeled type. Limits are declared in the model with <code>limit</code> statements and on the
+ * command line, which takes precedence.
+ * 
+ * Values and transformers do not record their type, so limits are resolved from the fields they
+ * set. The limit of a field is its own limit if there is one, then the limit of its type, and
+ * finally the default limit. If a field name is declared by several types, the smallest limit is
+ * used. The limit of a value is the smallest limit of its fields.
+ * 
+ * The number of times each limit is reached is recorded.
+ */
+public class ValueLimits {
+  private static final String DEFAULT_LIMIT_NAME = "default";
+
+  private volatile Limit defaultLimit = new Limit(DEFAULT_LIMIT_NAME, Constants.VALUE_LIMIT);
+  private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+  private final Map<String, Limit> fieldLimits = new ConcurrentHashMap<>();
+  private volatile int fieldLimitsVersion = -1;
+  private volatile int smallestLimit;
+  private final ConcurrentHashMap<String, AtomicInteger> triggerCounts =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Returns the key of a type or field limit.
+   * 
+   * @param type A fully-qualified class type.
+   * @param field The name of a field of the type, or null for the limit of the whole type.
+   * @return The key of the limit.
+   */
+  public static String makeKey(String type, String field) {
+    return field == null ? type : type + ":" + field;
+  }
+
+  /**
+   * Sets the default limit.
+   * 
+   * @param limit The maximum number of path values.
+   */
+  public void setDefaultLimit(int limit) {
+    defaultLimit = new Limit(DEFAULT_LIMIT_NAME, limit);
+    fieldLimitsVersion = -1;
+  }
+
+  /**
+   * Sets a type or field limit, which takes precedence over the limits in the model.
+   * 
+   * @param key A key, as returned by {@link #makeKey}.
+   * @param limit The maximum number of path values.
+   */
+  public void setLimit(String key, int limit) {
+    limits.put(key, limit);
+    fieldLimitsVersion = -1;
+  }
+
+  /**
+   * Sets type and field limits from a comma-separated list of <code>key=limit</code> pairs, where
+   * keys have the form <code>type</code> or <code>type:field</code>.
+   * 
+   * @param specification A list of limits.
+   * @throws IllegalArgumentException if the list is badly formatted.
+   */
+  public void setLimits(String specification) {
+    for (String entry : specification.split(",")) {
+      int separator = entry.lastIndexOf('=');
+      if (separator <= 0) {
+        throw new IllegalArgumentException("Badly formatted value limit: " + entry);
+      }
+      try {
+        setLimit(entry.substring(0, separator).trim(),
+            Integer.parseInt(entry.substring(separator + 1).trim()));
+      } catch (NumberFormatException exception) {
+        throw new IllegalArgumentException("Badly formatted value limit: " + entry, exception);
+      }
+    }
+  }
+
+  /**
+   * Determines whether a number of path values may exceed the limit of some values or
+   * transformers. This is a quick check that avoids looking up the fields of small values.
+   * 
+   * @param size A number of path values.
+   * @return True if the number of path values exceeds the smallest limit.
+   */
+  public boolean mayBeExceededBy(int size) {
+    validateFieldLimits();
+    return size > smallestLimit;
+  }
+
+  /**
+   * Returns the limit for the values or transformers that set some fields.
+   * 
+   * @param fields The fields that are set in the path values or path transformers.
+   * @return The smallest limit of the fields, or the default limit if there is no field.
+   */
+  public Limit getLimit(Collection<String> fields) {
+    validateFieldLimits();
+    if (fields.isEmpty() || !hasLimits()) {
+      return defaultLimit;
+    }
+
+    // Field limits replace the default limit, so that they can also raise it.
+    Limit result = null;
+    for (String field : fields) {
+      Limit limit = getFieldLimit(field);
+      if (result == null || limit.value < result.value) {
+        result = limit;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns how many times each limit was reached.
+   * 
+   * @return A description of the number of times each limit was reached.
+   */
+  public String getStatistics() {
+    StringBuilder result = new StringBuilder("Value limits reached:");
+    for (Map.Entry<String, AtomicInteger> entry : new TreeMap<>(triggerCounts).entrySet()) {
+      result.append(" ").append(entry.getKey()).append("=").append(entry.getValue());
+    }
+
+    return result.toString();
+  }
+
+  private boolean hasLimits() {
+    if (!limits.isEmpty()) {
+      return true;
+    }
+    Model model = Model.getInstance();
+    return model != null && !model.getValueLimits().isEmpty();
+  }
+
+  /**
+   * Discards resolved field limits if the limits or the model have changed since they were
+   * resolved.
+   */
+  private void validateFieldLimits() {
+    Model model = Model.getInstance();
+    int version = model == null ? 0 : model.getValueLimitsVersion() & Integer.MAX_VALUE;
+    if (version == fieldLimitsVersion) {
+      return;
+    }
+
+    synchronized (fieldLimits) {
+      if (version != fieldLimitsVersion) {
+        fieldLimits.clear();
+        int smallest = defaultLimit.value;
+        for (int limit : limits.values()) {
+          smallest = Math.min(smallest, limit);
+        }
+        if (model != null) {
+          for (int limit : model.getValueLimits().values()) {
+            smallest = Math.min(smallest, limit);
+          }
+        }
+        smallestLimit = smallest;
+        fieldLimitsVersion = version;
+      }
+    }
+  }
+
+  private Limit getFieldLimit(String field) {
+    Limit result = fieldLimits.get(field);
+    if (result != null) {
+      return result;
+    }
+
+    result = defaultLimit;
+    boolean declared = false;
+    Model model = Model.getInstance();
+    if (model != null) {
+      for (Map.Entry<String, List<String>> entry : model.getModeledTypeFields().entrySet()) {
+        if (entry.getValue().contains(field)) {
+          Limit limit = getDeclaredLimit(model, entry.getKey(), field);
+          if (!declared || limit.value < result.value) {
+            result = limit;
+          }
+          declared = true;
+        }
+      }
+    }
+
+    fieldLimits.put(field, result);
+    return result;
+  }
+
+  private Limit getDeclaredLimit(Model model, String type, String field) {
+    String[] keys = { makeKey(type, field), makeKey(type, null) };
+    for (String key : keys) {
+      Integer limit = limits.get(key);
+      if (limit == null) {
+        limit = model.getValueLimits().get(key);
+      }
+      if (limit != null) {
+        return new Limit(key, limit);
+      }
+    }
+
+    return defaultLimit;
+  }
+
+  /**
+   * A limit on the number of path values.
+   */
+  public class Limit {
+    private final String name;
+    private final int value;
+
+    private Limit(String name, int value) {
+      this.name = name;
+      this.value = value;
+    }
+
+    /**
+     * Determines whether a number of path values exceeds this limit. If it does, this is recorded.
+     * 
+     * @param size A number of path values.
+     * @return True if the number of path values exceeds this limit.
+     */
+    public boolean isExceededBy(int size) {
+      if (size <= value) {
+        return false;
+      }
+
+      AtomicInteger count = triggerCounts.get(name);
+      if (count == null) {
+        count = new AtomicInteger();
+        AtomicInteger previousCount = triggerCounts.putIfAbsent(name, count);
+        if (previousCount != null) {
+          count = previousCount;
+        }
+      }
+      count.incrementAndGet();
+      return true;
+    }
+
+    public int getValue() {
+      return value;
+    }
+
+    @Override
+    public String toString() {
+      return name + "=" + value;
+    }
+  }
+}
@@ -166,6 +166,25 @@ public class Argument implements Serializable {
     return type;
   }
 
+  /**
+   * Returns the type explicitly declared for this argument. Unlike {@link #getType}, this does not
+   * fall back to the field type.
+   * 
+   * @return The declared argument type, or null if none was declared.
+   */
+  public String getDeclaredType() {
+    return type;
+  }
+
+  /**
+   * Returns the field modified by this argument.
+   * 
+   * @return The field, or null if the argument does not refer to a field.
+   */
+  public Field getField() {
+    return field;
+  }
+
   /**
    * Returns the nominal field type for the field modified by this argument. This is the type
    * declared for the field. The argument value analysis used to determine the argument is the one
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.arguments;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The time budget for the computations of a single argument type. The budget starts at a maximum
+ * value. It decreases geometrically down to a minimum value when computations time out, as the
+ * global budget used to. Once enough computations have completed, the budget is also capped to a
+ * multiple of the observed latency percentile, so that pathological computations are stopped
+ * early for types whose computations are usually fast.
+ * 
+ * Latencies are recorded in a histogram with buckets of exponentially increasing width, so
+ * recording is lock-free and percentiles are approximate.
+ */
+public class ArgumentTimeBudget {
+  static final long MAX_TIME = TimeUnit.SECONDS.toMillis(300);
+  static final long MIN_TIME = TimeUnit.SECONDS.toMillis(120);
+  static final float DECREASE_FACTOR = 0.90f;
+  static final long MIN_PERCENTILE_TIME = TimeUnit.SECONDS.toMillis(10);
+  static final double PERCENTILE = 0.99;
+  static final int PERCENTILE_FACTOR = 10;
+  static final int MIN_SAMPLES = 50;
+
+  private static final int BUCKET_COUNT = 32;
+
+  private final AtomicLongArray latencyHistogram = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicInteger sampleCount = new AtomicInteger();
+  private final AtomicInteger timeoutCount = new AtomicInteger();
+  private long timeoutBudget = MAX_TIME;
+
+  /**
+   * Records the latency of a computation that completed.
+   * 
+   * @param latency The latency in milliseconds.
+   */
+  public void recordLatency(long latency) {
+    latencyHistogram.incrementAndGet(getBucket(latency));
+    sampleCount.incrementAndGet();
+  }
+
+  /**
+   * Records a computation that timed out, which decreases the budget.
+   */
+  public synchronized void recordTimeout() {
+    timeoutCount.incrementAndGet();
+    if (timeoutBudget > MIN_TIME) {
+      timeoutBudget = Math.max(MIN_TIME, (long) (timeoutBudget * DECREASE_FACTOR));
+    }
+  }
+
+  /**
+   * Returns the current budget.
+   * 
+   * @return The budget in milliseconds.
+   */
+  public long getBudget() {
+    long budget;
+    synchronized (this) {
+      budget = timeoutBudget;
+    }
+    if (sampleCount.get() >= MIN_SAMPLES) {
+      budget =
+          Math.min(budget,
+              Math.max(MIN_PERCENTILE_TIME, PERCENTILE_FACTOR * getLatencyPercentile(PERCENTILE)));
+    }
+
+    return budget;
+  }
+
+  /**
+   * Returns an upper bound for a latency percentile.
+   * 
+   * @param percentile A percentile between 0 and 1.
+   * @return An upper bound for the latency percentile in milliseconds, or 0 if no latency was
+   *         recorded.
+   */
+  public long getLatencyPercentile(double percentile) {
+    long total = 0;
+    long[] counts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; ++i) {
+      counts[i] = latencyHistogram.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long threshold = (long) Math.ceil(percentile * total);
+    long cumulativeCount = 0;
+    for (int i = 0; i < BUCKET_COUNT; ++i) {
+      cumulativeCount += counts[i];
+      if (cumulativeCount >= threshold) {
+        return getBucketUpperBound(i);
+      }
+    }
+
+    return getBucketUpperBound(BUCKET_COUNT - 1);
+  }
+
+  public int getSampleCount() {
+    return sampleCount.get();
+  }
+
+  public int getTimeoutCount() {
+    return timeoutCount.get();
+  }
+
+  /**
+   * Returns the histogram bucket for a latency. Bucket i contains latencies smaller than 2^i
+   * milliseconds.
+   */
+  private static int getBucket(long latency) {
+    int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, latency));
+    return Math.min(bucket, BUCKET_COUNT - 1);
+  }
+
+  private static long getBucketUpperBound(int bucket) {
+    return 1L << bucket;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("budget=%dms p50<=%dms p99<=%dms samples=%d timeouts=%d", getBudget(),
+        getLatencyPercentile(0.5), getLatencyPercentile(PERCENTILE), getSampleCount(),
+        getTimeoutCount());
+  }
+}
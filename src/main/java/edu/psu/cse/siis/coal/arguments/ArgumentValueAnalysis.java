@@ -20,6 +20,7 @@ package edu.psu.cse.siis.coal.arguments;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import soot.Unit;
 import soot.Value;
@@ -107,4 +108,17 @@ public abstract class ArgumentValueAnalysis {
    */
   public abstract Object getTopValue();
 
+  /**
+   * Stops the current computation if it was cancelled, which happens when it exceeds its time
+   * budget. Long-running analyses should call this regularly, so that the thread that runs them
+   * can be reused.
+   * 
+   * @throws CancellationException if the computation was cancelled.
+   */
+  protected static void checkCancelled() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Argument value computation was cancelled");
+    }
+  }
+
 }
@@ -23,45 +23,60 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import soot.Unit;
+import edu.psu.cse.siis.coal.AnalysisContext;
 import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Constants;
+import edu.psu.cse.siis.coal.PropagationTimers;
 import edu.psu.cse.siis.coal.field.transformers.FieldTransformer;
 import edu.psu.cse.siis.coal.field.transformers.FieldTransformerManager;
 
 /**
- * A singleton manager for method argument values, which trigger argument value analyses.
+ * A manager for method argument values, which trigger argument value analyses. There is one
+ * instance per {@link AnalysisContext}.
  */
 public class ArgumentValueManager {
-  private static final short MAX_TIME = 300;
-  private static final short MIN_TIME = 120;
-  private static final float DECREASE_FACTOR = 0.90f;
-
-  private static final ArgumentValueManager instance = new ArgumentValueManager();
+  private static final long IDLE_THREAD_TIMEOUT = 60;
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private final Map<String, ArgumentValueAnalysis> argumentValueAnalysisMap = new HashMap<>();
-  private final Map<ArgumentValueIdentifier, Set<Object>> cachedValues = new HashMap<>();
+  /**
+   * The argument values of the current analysis. They are not stored across runs, since they
+   * depend on code outside of the method of the call site: string values use method return values
+   * and field constraints collected from the whole application, and class and int values follow
+   * call graph edges.
+   */
+  private final ConcurrentHashMap<ArgumentValueIdentifier, Set<Object>> cachedValues =
+      new ConcurrentHashMap<>();
   private final Map<String, FieldTransformer> topFieldTransformerMap = new HashMap<>();
 
-  private short timeBudget = MAX_TIME;
+  private final ConcurrentHashMap<String, ArgumentTimeBudget> timeBudgets =
+      new ConcurrentHashMap<>();
+  private final long startTime = System.currentTimeMillis();
+  private ThreadPoolExecutor executor;
 
-  private ArgumentValueManager() {
+  /**
+   * Creates a manager. Use {@link #v()} to access the manager of the current analysis.
+   */
+  public ArgumentValueManager() {
   }
 
   public static ArgumentValueManager v() {
-    return instance;
+    return AnalysisContext.current().getArgumentValueManager();
   }
 
   /**
@@ -120,20 +135,20 @@ public class ArgumentValueManager {
       return null;
     }
 
-    if (AnalysisParameters.v().isIterative()) {
-      ArgumentValueIdentifier argumentValueIdentifier =
-          new ArgumentValueIdentifier(callSite, argument);
-      Set<Object> result = cachedValues.get(argumentValueIdentifier);
+    ArgumentValueIdentifier argumentValueIdentifier =
+        new ArgumentValueIdentifier(callSite, argument);
+    Set<Object> result = cachedValues.get(argumentValueIdentifier);
+    if (result == null) {
+      result = computeNewArgumentValues(argument, callSite);
       if (result != null) {
-        return result;
-      } else {
-        result = computeNewArgumentValues(argument, callSite);
-        cachedValues.put(argumentValueIdentifier, result);
-        return result;
+        Set<Object> previousResult = cachedValues.putIfAbsent(argumentValueIdentifier, result);
+        if (previousResult != null) {
+          result = previousResult;
+        }
       }
-    } else {
-      return computeNewArgumentValues(argument, callSite);
     }
+
+    return result;
   }
 
   /**
@@ -179,42 +194,43 @@ public class ArgumentValueManager {
     ArgumentValueAnalysis analysis = getArgumentValueAnalysis(type);
 
     if (inlineValues == null) {
-      ExecutorService pool = Executors.newFixedThreadPool(1);
-      // long start = System.currentTimeMillis();
-      Future<Set<Object>> valuesFuture =
-          startComputingNewArgumentValues(pool, analysis, argument, callSite);
+      long remainingTime = getRemainingTime();
+      if (remainingTime <= 0) {
+        PropagationTimers.v().argumentValueTimeLimitSkips.incrementAndGet();
+        return Collections.singleton(analysis.getTopValue());
+      }
+      ArgumentTimeBudget timeBudget = getTimeBudget(type);
+      long typeBudget = timeBudget.getBudget();
+      long budget = Math.min(typeBudget, remainingTime);
+
+      ArgumentValueTask task = new ArgumentValueTask(analysis, argument, callSite, timeBudget);
+      Future<Set<Object>> valuesFuture = getExecutor().submit(task);
 
       try {
-        return valuesFuture.get(timeBudget, TimeUnit.SECONDS);
-      } catch (InterruptedException | ExecutionException | TimeoutException exc) {
-        valuesFuture.cancel(true);
-        synchronized (this) {
-          if (timeBudget > MIN_TIME) {
-            timeBudget *= DECREASE_FACTOR;
-            if (timeBudget < MIN_TIME) {
-              timeBudget = MIN_TIME;
-            }
-          }
+        return valuesFuture.get(budget, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException exc) {
+        cancel(valuesFuture, task);
+        PropagationTimers.v().argumentValueTimeouts.incrementAndGet();
+        // Running out of total time says nothing about the cost of this argument type.
+        if (budget == typeBudget) {
+          timeBudget.recordTimeout();
         }
 
+        logger.warn("Could not infer argument value at statement " + callSite.toString()
+            + " within " + budget + " ms");
+        return Collections.singleton(analysis.getTopValue());
+      } catch (InterruptedException | ExecutionException exc) {
+        cancel(valuesFuture, task);
+
         logger.warn("Could not infer argument value at statement " + callSite.toString(), exc);
         return Collections.singleton(analysis.getTopValue());
       } catch (Error error) {
-        // Bad practice in general, but we don't control the analyses (especially the string
-        // analysis, which is sometimes very greedy). So we still attempt to recover from this.
-        valuesFuture.cancel(true);
-        // OutOfMemoryError is a very likely candidate.
-        System.gc();
+        // Bad practice in general, but we don't control the analyses. The string analysis limits
+        // the size of what it solves, so this should be rare.
+        cancel(valuesFuture, task);
 
         logger.warn("Could not infer argument value at statement " + callSite.toString(), error);
         return Collections.singleton(analysis.getTopValue());
-      } finally {
-        pool.shutdownNow();
-
-        // int duration = (int) (System.currentTimeMillis() - start);
-        // synchronized (PropagationTimers.v().argumentValueTime) {
-        // PropagationTimers.v().argumentValueTime += duration;
-        // }
       }
     } else {
       return analysis.computeInlineArgumentValues(inlineValues);
@@ -222,22 +238,166 @@ public class ArgumentValueManager {
   }
 
   /**
-   * Generates a future for a new argument value computation.
+   * Returns the time budget for an argument type.
    * 
-   * @param analysis An argument value analysis.
-   * @param argument An argument.
-   * @param callSite A call statement.
-   * @return A future for the new argument value computation.
-   */
-  private Future<Set<Object>> startComputingNewArgumentValues(final ExecutorService pool,
-      final ArgumentValueAnalysis analysis, final Argument argument, final Unit callSite) {
-    Callable<Set<Object>> callable = new Callable<Set<Object>>() {
-      @Override
-      public Set<Object> call() {
-        return analysis.computeArgumentValues(argument, callSite);
+   * @param type An argument type.
+   * @return The time budget for the type.
+   */
+  private ArgumentTimeBudget getTimeBudget(String type) {
+    ArgumentTimeBudget timeBudget = timeBudgets.get(type);
+    if (timeBudget == null) {
+      timeBudget = new ArgumentTimeBudget();
+      ArgumentTimeBudget previousTimeBudget = timeBudgets.putIfAbsent(type, timeBudget);
+      if (previousTimeBudget != null) {
+        timeBudget = previousTimeBudget;
+      }
+    }
+
+    return timeBudget;
+  }
+
+  /**
+   * Returns the time left before the total time limit for argument values is reached. The time is
+   * measured from the creation of this manager, that is, from the beginning of the analysis.
+   * 
+   * @return The remaining time in milliseconds.
+   */
+  private long getRemainingTime() {
+    long timeLimit = AnalysisParameters.v().getArgumentTimeLimit();
+    if (timeLimit <= 0) {
+      return Long.MAX_VALUE;
+    }
+
+    return startTime + TimeUnit.SECONDS.toMillis(timeLimit) - System.currentTimeMillis();
+  }
+
+  /**
+   * Returns a description of the time budget and latencies of each argument type.
+   * 
+   * @return A description of the time budgets.
+   */
+  public String getTimeBudgetSummary() {
+    StringBuilder result = new StringBuilder("Argument value time budgets:");
+    for (Map.Entry<String, ArgumentTimeBudget> entry : timeBudgets.entrySet()) {
+      result.append(String.format("%n  %s: %s", entry.getKey(), entry.getValue()));
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Cancels an argument value computation. The thread running it is interrupted, so that the
+   * analysis can stop at its next call to {@link ArgumentValueAnalysis#checkCancelled()}.
+   * 
+   * @param valuesFuture The future for the computation.
+   * @param task The computation.
+   */
+  private void cancel(Future<Set<Object>> valuesFuture, ArgumentValueTask task) {
+    valuesFuture.cancel(true);
+    task.abandon();
+  }
+
+  /**
+   * Returns the executor for argument value computations. It is created the first time it is used,
+   * with as many threads as the solver. Threads are stopped when they have been idle for a while.
+   * 
+   * @return The executor.
+   */
+  private synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      final AnalysisContext context = AnalysisContext.current();
+      int threadCount = Math.max(1, AnalysisParameters.v().getThreadCount());
+      executor =
+          new ThreadPoolExecutor(threadCount, threadCount, IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger threadCounter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                  Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                      AnalysisContext.setCurrent(context);
+                      runnable.run();
+                    }
+                  }, "argument-value-" + threadCounter.incrementAndGet());
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+      executor.allowCoreThreadTimeOut(true);
+    }
+
+    return executor;
+  }
+
+  /**
+   * Adds a thread to the executor, to replace a thread that is still running a cancelled
+   * computation.
+   */
+  private synchronized void addWorker() {
+    executor.setMaximumPoolSize(executor.getMaximumPoolSize() + 1);
+    executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+  }
+
+  /**
+   * Removes the thread that was added when a cancelled computation finally returns.
+   */
+  private synchronized void removeWorker() {
+    executor.setCorePoolSize(executor.getCorePoolSize() - 1);
+    executor.setMaximumPoolSize(executor.getMaximumPoolSize() - 1);
+  }
+
+  /**
+   * A computation of argument values. Analyses that do not check for cancellation keep running
+   * after they are cancelled. In that case, a thread is temporarily added to the executor, so that
+   * other computations are not delayed.
+   */
+  private class ArgumentValueTask implements Callable<Set<Object>> {
+    private final ArgumentValueAnalysis analysis;
+    private final Argument argument;
+    private final Unit callSite;
+    private final ArgumentTimeBudget timeBudget;
+    private boolean started = false;
+    private boolean finished = false;
+    private boolean abandoned = false;
+
+    public ArgumentValueTask(ArgumentValueAnalysis analysis, Argument argument, Unit callSite,
+        ArgumentTimeBudget timeBudget) {
+      this.analysis = analysis;
+      this.argument = argument;
+      this.callSite = callSite;
+      this.timeBudget = timeBudget;
+    }
+
+    @Override
+    public Set<Object> call() {
+      synchronized (this) {
+        started = true;
       }
-    };
+      long start = System.nanoTime();
+      try {
+        Set<Object> result = analysis.computeArgumentValues(argument, callSite);
+        timeBudget.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+      } finally {
+        synchronized (this) {
+          finished = true;
+          if (abandoned) {
+            removeWorker();
+          }
+        }
+      }
+    }
 
-    return pool.submit(callable);
+    /**
+     * Indicates that the result of this computation is not needed anymore.
+     */
+    public synchronized void abandon() {
+      if (started && !finished && !abandoned) {
+        abandoned = true;
+        addWorker();
+      }
+    }
   }
 }
@@ -19,38 +19,65 @@
 package edu.psu.cse.siis.coal.arguments;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import soot.Local;
+import soot.Scene;
 import soot.SootMethod;
 import soot.Unit;
+import soot.Value;
 import soot.jimple.AssignStmt;
 import soot.jimple.DefinitionStmt;
-import soot.jimple.IdentityStmt;
-import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.toolkits.scalar.LocalDefs;
 import soot.toolkits.scalar.Pair;
 import edu.psu.cse.siis.coal.AnalysisParameters;
+import edu.psu.cse.siis.coal.UnitGraphCache;
 
 /**
  * An abstract backward argument value analysis, which provides utility functions.
  */
 public abstract class BackwardValueAnalysis extends ArgumentValueAnalysis {
+  /**
+   * The maximum number of call sites of a method whose arguments are analyzed to find the values of
+   * a parameter of the method. Parameters of methods with more callers are unknown.
+   */
+  private static final int MAX_CALLERS = 64;
+
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
+  private final ConcurrentHashMap<Pair<SootMethod, Integer>, Set<Object>> parameterSummaries =
+      new ConcurrentHashMap<>();
+  private final ThreadLocal<List<SummaryFrame>> summaryFrames =
+      new ThreadLocal<List<SummaryFrame>>() {
+        @Override
+        protected List<SummaryFrame> initialValue() {
+          return new ArrayList<>();
+        }
+      };
+
   /**
-   * Returns all assignments for a local variable. This walks the interprocedural control flow graph
-   * back from a statement looking for all assignments to a given local variable.
+   * Returns all assignments for a local variable. This looks up the definitions of the local
+   * variable that reach a statement. Copies from other local variables are followed to the
+   * definitions of these variables. The reaching definitions are computed once per method and
+   * cached in the {@link UnitGraphCache}.
    * 
    * @param start The statement where the analysis should start.
    * @param local The local variable whose assignments should be found.
    * @param init A boolean that indicates whether the analysis should be initialized. This should
    *          always be true for non-recursive calls.
-   * @param visitedUnits The set of statements visited by the analysis.
+   * @param visitedUnits The set of definitions visited by the analysis, along with the local
+   *          variable they define.
    * @return The set of assignment statements for the local variable.
    */
   protected List<DefinitionStmt> findAssignmentsForLocal(Unit start, Local local, boolean init,
@@ -59,51 +86,129 @@ public abstract class BackwardValueAnalysis extends ArgumentValueAnalysis {
       logger.debug("Finding assignments for local " + local);
     }
     SootMethod method = AnalysisParameters.v().getIcfg().getMethodOf(start);
-    ExceptionalUnitGraph graph = new ExceptionalUnitGraph(method.getActiveBody());
+    LocalDefs localDefs = UnitGraphCache.v().getLocalDefs(method.getActiveBody());
     List<DefinitionStmt> result = new ArrayList<DefinitionStmt>();
 
-    Stack<Unit> stack = new Stack<Unit>();
-    stack.push(start);
+    Stack<Pair<Unit, Local>> stack = new Stack<Pair<Unit, Local>>();
+    stack.push(new Pair<Unit, Local>(start, local));
     if (init) {
       visitedUnits.clear();
     }
 
     while (!stack.empty()) {
-      Unit current = stack.pop();
-      if (logger.isDebugEnabled()) {
-        logger.debug(current + " " + current.getClass());
-      }
-      Pair<Unit, Local> pair = new Pair<Unit, Local>(current, local);
-      if (visitedUnits.contains(pair)) {
-        continue;
-      }
-      visitedUnits.add(pair);
-      if (current instanceof IdentityStmt) {
-        IdentityStmt identityStmt = (IdentityStmt) current;
-        // method.
-        if (identityStmt.getLeftOp().equivTo(local)) {
-          result.add(identityStmt);
+      checkCancelled();
+      Pair<Unit, Local> use = stack.pop();
+      Local usedLocal = use.getO2();
+
+      for (Unit definition : localDefs.getDefsOfAt(usedLocal, use.getO1())) {
+        if (logger.isDebugEnabled()) {
+          logger.debug(definition + " " + definition.getClass());
         }
-      } else if (current instanceof AssignStmt) {
-        AssignStmt assignStmt = (AssignStmt) current;
-        if (assignStmt.getLeftOp().equivTo(local)) {
-          if (assignStmt.getRightOp() instanceof Local) {
-            result.addAll(findAssignmentsForLocal(current, (Local) assignStmt.getRightOp(), false,
-                visitedUnits));
-          } else {
-            result.add(assignStmt);
-          }
-          // The assignment generates the local on that path.
-          // Anything before is irrelevant.
+        if (!visitedUnits.add(new Pair<Unit, Local>(definition, usedLocal))) {
           continue;
         }
+
+        DefinitionStmt definitionStmt = (DefinitionStmt) definition;
+        if (definitionStmt instanceof AssignStmt && definitionStmt.getRightOp() instanceof Local) {
+          stack.push(new Pair<Unit, Local>(definition, (Local) definitionStmt.getRightOp()));
+        } else {
+          result.add(definitionStmt);
+        }
       }
-      for (Unit pred : graph.getPredsOf(current)) {
-        stack.push(pred);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the possible values of a method parameter. These are the values of the corresponding
+   * argument at all call sites of the method, as given by
+   * {@link #computeVariableValues(Value, Stmt)}. Summaries are memoized, so that each parameter is
+   * only analyzed once and the summaries of callers are reused by all queries.
+   * 
+   * Parameters that depend on themselves through recursive calls are handled by ignoring the
+   * recursive call sites. Summaries that were computed while another parameter of the same cycle
+   * was being analyzed are incomplete, so only the summary of the first parameter of the cycle is
+   * memoized.
+   * 
+   * @param method A method.
+   * @param index The index of a parameter of the method.
+   * @return The set of possible values for the parameter.
+   */
+  protected Set<Object> getParameterValues(SootMethod method, int index) {
+    Pair<SootMethod, Integer> key = new Pair<SootMethod, Integer>(method, index);
+    Set<Object> result = parameterSummaries.get(key);
+    if (result != null) {
+      return result;
+    }
+
+    List<SummaryFrame> frames = summaryFrames.get();
+    for (int depth = 0; depth < frames.size(); ++depth) {
+      if (frames.get(depth).key.equals(key)) {
+        SummaryFrame top = frames.get(frames.size() - 1);
+        top.lowDepth = Math.min(top.lowDepth, depth);
+        return Collections.emptySet();
       }
     }
 
+    SummaryFrame frame = new SummaryFrame(key, frames.size());
+    frames.add(frame);
+    try {
+      result = computeParameterValues(method, index);
+    } finally {
+      frames.remove(frames.size() - 1);
+    }
+
+    if (frame.lowDepth < frame.depth) {
+      SummaryFrame parent = frames.get(frames.size() - 1);
+      parent.lowDepth = Math.min(parent.lowDepth, frame.lowDepth);
+    } else {
+      result = Collections.unmodifiableSet(result);
+      Set<Object> previous = parameterSummaries.putIfAbsent(key, result);
+      if (previous != null) {
+        result = previous;
+      }
+    }
+
+    return result;
+  }
+
+  private Set<Object> computeParameterValues(SootMethod method, int index) {
+    List<Edge> edges = new ArrayList<>();
+    for (Iterator<Edge> iter = Scene.v().getCallGraph().edgesInto(method); iter.hasNext();) {
+      edges.add(iter.next());
+      if (edges.size() > MAX_CALLERS) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Too many callers for parameter " + index + " of " + method);
+        }
+        return Collections.singleton(getTopValue());
+      }
+    }
+
+    Set<Object> result = new HashSet<>();
+    for (Edge edge : edges) {
+      checkCancelled();
+      Stmt callSite = edge.srcStmt();
+      result.addAll(computeVariableValues(callSite.getInvokeExpr().getArg(index), callSite));
+    }
+
     return result;
   }
 
+  /**
+   * A parameter summary that is being computed by the current thread.
+   */
+  private static class SummaryFrame {
+    private final Pair<SootMethod, Integer> key;
+    private final int depth;
+    /** The smallest depth of a summary that this summary depends on through a cycle. */
+    private int lowDepth;
+
+    public SummaryFrame(Pair<SootMethod, Integer> key, int depth) {
+      this.key = key;
+      this.depth = depth;
+      this.lowDepth = depth;
+    }
+  }
+
 }
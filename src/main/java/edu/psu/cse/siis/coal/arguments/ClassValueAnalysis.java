@@ -96,19 +96,13 @@ public class ClassValueAnalysis extends BackwardValueAnalysis {
         result.add(((ClassConstant) rhsValue).getValue().intern());
       } else if (rhsValue instanceof ParameterRef) {
         ParameterRef parameterRef = (ParameterRef) rhsValue;
-        Iterator<Edge> edges =
-            Scene.v().getCallGraph()
-                .edgesInto(AnalysisParameters.v().getIcfg().getMethodOf(assignStmt));
-        while (edges.hasNext()) {
-          Edge edge = edges.next();
-          InvokeExpr invokeExpr = edge.srcStmt().getInvokeExpr();
-          Set<Object> newResults =
-              computeVariableValues(invokeExpr.getArg(parameterRef.getIndex()), edge.srcStmt());
-          if (newResults.contains(TOP_VALUE) || newResults.contains(Constants.ANY_STRING)) {
-            return Collections.singleton((Object) TOP_VALUE);
-          } else {
-            result.addAll(newResults);
-          }
+        Set<Object> newResults =
+            getParameterValues(AnalysisParameters.v().getIcfg().getMethodOf(assignStmt),
+                parameterRef.getIndex());
+        if (newResults.contains(TOP_VALUE) || newResults.contains(Constants.ANY_STRING)) {
+          return Collections.singleton((Object) TOP_VALUE);
+        } else {
+          result.addAll(newResults);
         }
       } else if (rhsValue instanceof InvokeExpr) {
         InvokeExpr invokeExpr = (InvokeExpr) rhsValue;
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.arguments;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the size of a string constraint graph and the number of strings it describes, so that
+ * constraints that would exhaust memory can be widened before they are solved. The number of
+ * strings is over-approximated: unions add up the strings of their elements and concatenations
+ * multiply them. The solver replaces a method call with the return values of the method, so a call
+ * counts as the number of its return values. Calls whose return values are unknown, parameters and
+ * pending constraints are expanded by the solver into constraints that are not part of the graph,
+ * so they count as a given number of unknown strings. Cyclic constraints count as a single string.
+ */
+class ConstraintSizeEstimator implements switchLC {
+  private final int maxNodes;
+  private final long maxValues;
+  private final long unknownValues;
+  private final RecursiveDAGSolverVisitorLC.MethodReturnValueAnalysisInterface returnValues;
+  private final Map<LanguageConstraints, Long> estimates = new IdentityHashMap<>();
+  private final Set<LanguageConstraints> inProgress = Collections
+      .newSetFromMap(new IdentityHashMap<LanguageConstraints, Boolean>());
+  private long currentEstimate;
+  private boolean tooManyNodes = false;
+
+  /**
+   * Constructor.
+   * 
+   * @param maxNodes The maximum number of nodes in a constraint graph.
+   * @param maxValues The maximum estimated number of strings described by a constraint graph.
+   * @param unknownValues The estimated number of strings of constraints that are not in the graph.
+   * @param returnValues The return values of method calls, which should be the same as the ones
+   *          used by the solver. It can be null if they are unknown.
+   */
+  ConstraintSizeEstimator(int maxNodes, long maxValues, long unknownValues,
+      RecursiveDAGSolverVisitorLC.MethodReturnValueAnalysisInterface returnValues) {
+    this.maxNodes = maxNodes;
+    this.maxValues = maxValues;
+    this.unknownValues = unknownValues;
+    this.returnValues = returnValues;
+  }
+
+  /**
+   * Determines whether a constraint graph exceeds the limits of this estimator.
+   * 
+   * @param box The root of a constraint graph.
+   * @return True if the graph has too many nodes or describes too many strings.
+   */
+  boolean exceedsLimits(LanguageConstraints.Box box) {
+    long estimate = estimate(box);
+    return tooManyNodes || estimate > maxValues;
+  }
+
+  private long estimate(LanguageConstraints.Box box) {
+    if (tooManyNodes || box == null || box.getLC() == null) {
+      return 1;
+    }
+    LanguageConstraints constraints = box.getLC();
+    Long estimate = estimates.get(constraints);
+    if (estimate != null) {
+      return estimate;
+    }
+    if (!inProgress.add(constraints)) {
+      return 1;
+    }
+    if (estimates.size() + inProgress.size() > maxNodes) {
+      tooManyNodes = true;
+      return 1;
+    }
+
+    constraints.apply(this);
+    inProgress.remove(constraints);
+    estimates.put(constraints, currentEstimate);
+    return currentEstimate;
+  }
+
+  @Override
+  public boolean setFieldMode(boolean fieldMode) {
+    return false;
+  }
+
+  @Override
+  public void caseTop(LanguageConstraints.Top top) {
+    currentEstimate = 1;
+  }
+
+  @Override
+  public void caseBottom(LanguageConstraints.Bottom bottom) {
+    currentEstimate = 1;
+  }
+
+  @Override
+  public void caseTerminal(LanguageConstraints.Terminal terminal) {
+    currentEstimate = 1;
+  }
+
+  @Override
+  public void caseUnion(LanguageConstraints.Union union) {
+    long result = 0;
+    for (LanguageConstraints.Box element : union.elements) {
+      long elementEstimate = estimate(element);
+      result = elementEstimate > maxValues + 1 - result ? maxValues + 1 : result + elementEstimate;
+    }
+    currentEstimate = Math.max(result, 1);
+  }
+
+  @Override
+  public void caseConcatenate(LanguageConstraints.Concatenate concatenate) {
+    long left = estimate(concatenate.left);
+    long right = estimate(concatenate.right);
+    currentEstimate = left > (maxValues + 1) / right ? maxValues + 1 : left * right;
+  }
+
+  @Override
+  public void caseEq(LanguageConstraints.Eq eq) {
+    currentEstimate = estimate(eq.lcb);
+  }
+
+  @Override
+  public void casePending(LanguageConstraints.Pending pending) {
+    currentEstimate = unknownValues;
+  }
+
+  @Override
+  public void caseParameter(LanguageConstraints.Parameter parameter) {
+    currentEstimate = unknownValues;
+  }
+
+  @Override
+  public void caseCall(LanguageConstraints.Call call) {
+    if (call.arguments != null) {
+      for (LanguageConstraints.Box argument : call.arguments) {
+        estimate(argument);
+      }
+    }
+    Set<Object> values = returnValues == null ? null : returnValues.getMethodReturnValues(call);
+    currentEstimate = values == null ? unknownValues : Math.max(values.size(), 1);
+  }
+}
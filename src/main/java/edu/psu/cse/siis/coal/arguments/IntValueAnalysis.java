@@ -20,21 +20,17 @@ package edu.psu.cse.siis.coal.arguments;
 
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
 import soot.Local;
-import soot.Scene;
 import soot.Unit;
 import soot.Value;
 import soot.jimple.DefinitionStmt;
 import soot.jimple.IntConstant;
-import soot.jimple.InvokeExpr;
 import soot.jimple.LongConstant;
 import soot.jimple.ParameterRef;
 import soot.jimple.Stmt;
-import soot.jimple.toolkits.callgraph.Edge;
 import soot.toolkits.scalar.Pair;
 import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Constants;
@@ -97,25 +93,8 @@ public class IntValueAnalysis extends BackwardValueAnalysis {
         result.add(((LongConstant) rhsValue).value);
       } else if (rhsValue instanceof ParameterRef) {
         ParameterRef parameterRef = (ParameterRef) rhsValue;
-        Iterator<Edge> edges =
-            Scene.v().getCallGraph()
-                .edgesInto(AnalysisParameters.v().getIcfg().getMethodOf(assignStmt));
-        while (edges.hasNext()) {
-          Edge edge = edges.next();
-          InvokeExpr invokeExpr = edge.srcStmt().getInvokeExpr();
-          Value argValue = invokeExpr.getArg(parameterRef.getIndex());
-          if (argValue instanceof IntConstant) {
-            result.add(((IntConstant) argValue).value);
-          } else if (argValue instanceof LongConstant) {
-            result.add(((LongConstant) argValue).value);
-          } else if (argValue instanceof Local) {
-            Set<Object> newResults =
-                findIntAssignmentsForLocal(edge.srcStmt(), (Local) argValue, visitedStmts);
-            result.addAll(newResults);
-          } else {
-            result.add(TOP_VALUE);
-          }
-        }
+        result.addAll(getParameterValues(
+            AnalysisParameters.v().getIcfg().getMethodOf(assignStmt), parameterRef.getIndex()));
       } else {
         return Collections.singleton((Object) TOP_VALUE);
       }
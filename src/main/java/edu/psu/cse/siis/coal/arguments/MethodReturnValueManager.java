@@ -25,25 +25,30 @@ import java.util.Set;
 import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
+import edu.psu.cse.siis.coal.AnalysisContext;
+import edu.psu.cse.siis.coal.CallSiteClassifier;
 import edu.psu.cse.siis.coal.Constants;
-import edu.psu.cse.siis.coal.Model;
 import edu.psu.cse.siis.coal.arguments.LanguageConstraints.Call;
 
 /**
- * A singleton manager for method return values.
+ * A manager for method return values. There is one instance per
+ * {@link edu.psu.cse.siis.coal.AnalysisContext AnalysisContext}.
  */
 public class MethodReturnValueManager {
-  private static final Map<String, MethodReturnValueAnalysis> methodReturnValueAnalysisMap =
-      new HashMap<>();
   private static final SourceMethodReturnValueAnalysis sourceMethodReturnValueAnalysis =
       new SourceMethodReturnValueAnalysis();
-  private static final MethodReturnValueManager instance = new MethodReturnValueManager();
 
-  private MethodReturnValueManager() {
+  private final Map<String, MethodReturnValueAnalysis> methodReturnValueAnalysisMap =
+      new HashMap<>();
+
+  /**
+   * Creates a manager. Use {@link #v()} to access the manager of the current analysis.
+   */
+  public MethodReturnValueManager() {
   }
 
   public static MethodReturnValueManager v() {
-    return instance;
+    return AnalysisContext.current().getMethodReturnValueManager();
   }
 
   /**
@@ -100,7 +105,7 @@ public class MethodReturnValueManager {
         methodReturnValueAnalysisMap.get(invokeExpr.getMethod().getSubSignature());
     if (analysis != null) {
       return analysis.computeMethodReturnValues(call);
-    } else if (Model.v().getArgumentsForSource(invokeExpr) != null) {
+    } else if (CallSiteClassifier.v().getClassification(stmt).getSourceArguments() != null) {
       // Then consider the declared COAL sources.
       return sourceMethodReturnValueAnalysis.computeMethodReturnValues(call);
     }
@@ -19,18 +19,35 @@
 package edu.psu.cse.siis.coal.arguments;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Body;
 import soot.Local;
 import soot.Value;
 import soot.jimple.NullConstant;
 import soot.jimple.Stmt;
 import soot.jimple.StringConstant;
-import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.scalar.Pair;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+
 import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Constants;
+import edu.psu.cse.siis.coal.PropagationTimers;
+import edu.psu.cse.siis.coal.UnitGraphCache;
+import edu.psu.cse.siis.coal.field.values.StringWidening;
 import edu.psu.cse.siis.coal.arguments.LanguageConstraints.Call;
 
 /**
@@ -38,6 +55,100 @@ import edu.psu.cse.siis.coal.arguments.LanguageConstraints.Call;
  */
 public class StringValueAnalysis extends ArgumentValueAnalysis {
   private static final String TOP_VALUE = Constants.ANY_STRING;
+  /** The maximum number of statements in the methods whose constraints are cached. */
+  private static final long MAXIMUM_CONSTRAINT_STATEMENTS = 500000;
+  /** The maximum total length of the cached string values. */
+  private static final long MAXIMUM_SOLVED_CHARACTERS = 16 * 1024 * 1024;
+  /** The maximum number of nodes in a constraint graph that is solved. */
+  private static final int MAX_CONSTRAINT_NODES = 20000;
+  /** The maximum estimated number of strings described by a constraint graph that is solved. */
+  private static final long MAX_ESTIMATED_VALUES = 100000;
+  /** The maximum number of values of a variable or of a method return value. */
+  private static final int MAX_VALUES = 1024;
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * Constraint collectors of method bodies. A collector computes the definitions of the method
+   * locals when it is created and collects constraints on demand, so several queries in the same
+   * method share that work. Collectors refer to their bodies and to the global constraints of the
+   * library, so the cache is shared by all instances, bounded by the number of statements in the
+   * cached bodies and replaced by {@link #resetGlobalState()}.
+   */
+  private static volatile LoadingCache<Body, ConstraintCollector> constraintCollectors =
+      makeConstraintCollectorCache();
+
+  /**
+   * Solved values of locals at statements. Failed or cancelled computations are not cached.
+   */
+  private final Cache<Pair<Local, Stmt>, Set<Object>> solvedValues = CacheBuilder.newBuilder()
+      .maximumWeight(MAXIMUM_SOLVED_CHARACTERS)
+      .weigher(new Weigher<Pair<Local, Stmt>, Set<Object>>() {
+        @Override
+        public int weigh(Pair<Local, Stmt> key, Set<Object> values) {
+          int weight = 1;
+          for (Object value : values) {
+            weight += value.toString().length();
+          }
+          return weight;
+        }
+      }).build();
+
+  /**
+   * The static fields of the constraint collection library that refer to the constraints and the
+   * Soot objects of the last analysis.
+   */
+  private static final String[] CONSTRAINT_FIELDS = { "stmt2constr", "processed", "field2constr",
+      "ret2constr", "argument2constr" };
+
+  /**
+   * Clears the constraints that the constraint collection library keeps in static fields, so that
+   * the next call to {@link #initialize()} collects global constraints again. The cached constraint
+   * collectors are discarded as well. This must be called
+   * between analyses that run in the same JVM after Soot was reset, since the library would
+   * otherwise reuse the constraints of the previous analysis and keep its Scene reachable.
+   * 
+   * @throws RuntimeException if the state of the library could not be reset.
+   */
+  public static void resetGlobalState() {
+    try {
+      java.lang.reflect.Field doneField =
+          ConstraintCollector.class.getDeclaredField("done_globalCollection");
+      doneField.setAccessible(true);
+      doneField.setBoolean(null, false);
+
+      for (String fieldName : CONSTRAINT_FIELDS) {
+        java.lang.reflect.Field field = Res2Constr.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        Object value = field.get(null);
+        if (value instanceof Map) {
+          ((Map<?, ?>) value).clear();
+        } else if (value instanceof Collection) {
+          ((Collection<?>) value).clear();
+        } else {
+          throw new RuntimeException("Unexpected type for constraint field " + fieldName);
+        }
+      }
+    } catch (NoSuchFieldException | IllegalAccessException | SecurityException e) {
+      throw new RuntimeException("Could not reset the constraint collection state", e);
+    }
+    constraintCollectors = makeConstraintCollectorCache();
+  }
+
+  private static LoadingCache<Body, ConstraintCollector> makeConstraintCollectorCache() {
+    return CacheBuilder.newBuilder().maximumWeight(MAXIMUM_CONSTRAINT_STATEMENTS)
+        .weigher(new Weigher<Body, ConstraintCollector>() {
+          @Override
+          public int weigh(Body body, ConstraintCollector constraintCollector) {
+            return body.getUnits().size();
+          }
+        }).build(new CacheLoader<Body, ConstraintCollector>() {
+          @Override
+          public ConstraintCollector load(Body body) {
+            return new ConstraintCollector(UnitGraphCache.v().getGraph(body));
+          }
+        });
+  }
 
   /**
    * Initializes the string argument value analysis. This should be called before using the
@@ -73,43 +184,103 @@ public class StringValueAnalysis extends ArgumentValueAnalysis {
     } else if (value instanceof NullConstant) {
       return Collections.singleton((Object) "<NULL>");
     } else if (value instanceof Local) {
-      Local local = (Local) value;
-
-      ConstraintCollector constraintCollector =
-          new ConstraintCollector(new ExceptionalUnitGraph(AnalysisParameters.v().getIcfg()
-              .getMethodOf(stmt).getActiveBody()));
-      LanguageConstraints.Box lcb = constraintCollector.getConstraintOfAt(local, stmt);
-      RecursiveDAGSolverVisitorLC dagvlc =
-          new RecursiveDAGSolverVisitorLC(5, null,
-              new RecursiveDAGSolverVisitorLC.MethodReturnValueAnalysisInterface() {
-                @Override
-                public Set<Object> getMethodReturnValues(Call call) {
-                  return MethodReturnValueManager.v().getMethodReturnValues(call);
-                }
-              });
-
-      if (dagvlc.solve(lcb)) {
-        // boolean flag = false;
-        // if (dagvlc.result.size() == 0 || flag == true) {
-        // System.out.println("ID: " + lcb.uid);
-        // // int dbg = 10;
-        // // while (dbg == 10) {
-        // System.out.println("Returning " + dagvlc.result);
-        // System.out.println("Returning.. " + lcb);
-        // dagvlc.solve(lcb);
-        // System.out.println("done");
-        // // }
-        // }
-        // System.out.println("Returning " + dagvlc.result);
-        return new HashSet<Object>(dagvlc.result);
-      } else {
-        return Collections.singleton((Object) TOP_VALUE);
+      Pair<Local, Stmt> key = new Pair<Local, Stmt>((Local) value, stmt);
+      Set<Object> result = solvedValues.getIfPresent(key);
+      if (result == null) {
+        result = solveVariableValues((Local) value, stmt);
+        solvedValues.put(key, result);
       }
+
+      return new HashSet<>(result);
     } else {
       return Collections.singleton((Object) TOP_VALUE);
     }
   }
 
+  /**
+   * Solves the constraints on the values of a local variable at a given statement.
+   * 
+   * @param local The local variable whose values should be determined.
+   * @param stmt The statement that uses the variable.
+   * @return The set of possible values.
+   */
+  private Set<Object> solveVariableValues(Local local, Stmt stmt) {
+    ConstraintCollector constraintCollector =
+        constraintCollectors.getUnchecked(AnalysisParameters.v().getIcfg().getMethodOf(stmt)
+            .getActiveBody());
+    LanguageConstraints.Box lcb;
+    // Collectors keep state between queries.
+    synchronized (constraintCollector) {
+      lcb = constraintCollector.getConstraintOfAt(local, stmt);
+    }
+    checkCancelled();
+    // Return values are shared by the estimator and the solver, so that they are computed once.
+    final Map<Call, Set<Object>> returnValues = new IdentityHashMap<>();
+    RecursiveDAGSolverVisitorLC.MethodReturnValueAnalysisInterface returnValueInterface =
+        new RecursiveDAGSolverVisitorLC.MethodReturnValueAnalysisInterface() {
+          @Override
+          public Set<Object> getMethodReturnValues(Call call) {
+            if (returnValues.containsKey(call)) {
+              return returnValues.get(call);
+            }
+            checkCancelled();
+            Set<Object> result = MethodReturnValueManager.v().getMethodReturnValues(call);
+            result = result == null ? null : limitValues(result);
+            returnValues.put(call, result);
+            return result;
+          }
+        };
+    // Solving enumerates all the strings described by the constraints, which can exhaust memory.
+    if (new ConstraintSizeEstimator(MAX_CONSTRAINT_NODES, MAX_ESTIMATED_VALUES, MAX_VALUES,
+        returnValueInterface).exceedsLimits(lcb)) {
+      return widen(local, stmt);
+    }
+    RecursiveDAGSolverVisitorLC dagvlc = new RecursiveDAGSolverVisitorLC(5, null,
+        returnValueInterface);
+
+    if (dagvlc.solve(lcb)) {
+      Set<Object> result = limitValues(dagvlc.result);
+      if (logger.isDebugEnabled() && result != dagvlc.result) {
+        logger.debug("Widened values of " + local + " at statement " + stmt);
+      }
+      return Collections.unmodifiableSet(new HashSet<Object>(result));
+    } else {
+      return Collections.singleton((Object) TOP_VALUE);
+    }
+  }
+
+  /**
+   * Limits the number of values of a string variable or method. If string widening is enabled,
+   * large sets are widened to prefix patterns. Otherwise sets that exceed the maximum number of
+   * values are replaced with the unknown value.
+   * 
+   * @param values A set of strings.
+   * @return The original set if it is small enough, or a widened set.
+   */
+  private Set<Object> limitValues(Set<Object> values) {
+    int limit = Math.min(AnalysisParameters.v().getStringWideningLimit(), MAX_VALUES);
+    Set<Object> result = values;
+    if (limit > 0) {
+      result = StringWidening.widen(values, limit);
+    }
+    if (result.size() > MAX_VALUES) {
+      result = Collections.singleton((Object) TOP_VALUE);
+    }
+    if (result != values) {
+      PropagationTimers.v().stringValueWidenings.incrementAndGet();
+    }
+
+    return result;
+  }
+
+  private Set<Object> widen(Local local, Stmt stmt) {
+    PropagationTimers.v().stringValueWidenings.incrementAndGet();
+    if (logger.isDebugEnabled()) {
+      logger.debug("Widening values of " + local + " at statement " + stmt);
+    }
+    return Collections.singleton((Object) TOP_VALUE);
+  }
+
   @Override
   public Object getTopValue() {
     return TOP_VALUE;
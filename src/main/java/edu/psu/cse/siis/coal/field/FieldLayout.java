@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.field;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.psu.cse.siis.coal.Internable;
+import edu.psu.cse.siis.coal.Pool;
+
+/**
+ * The set of fields of a path value or path transformer, which store their field values or field
+ * transformers in a flat array in the order of this layout.
+ * 
+ * Field names are mapped to small integer slots. Slots are assigned when the model is loaded, in
+ * the declaration order of the fields of each modeled type, and on demand for fields that are not
+ * in the model. A layout is a sorted array of slots, so that merging two layouts is a single pass
+ * over both arrays. Layouts are interned and shared by all the values and transformers with the
+ * same fields.
+ */
+public class FieldLayout implements Internable<FieldLayout> {
+  private static final Pool<FieldLayout> POOL = new Pool<>("FieldLayout");
+  private static final Map<String, Integer> SLOTS = new ConcurrentHashMap<>();
+
+  /**
+   * The layout without any field.
+   */
+  public static final FieldLayout EMPTY = new FieldLayout(new int[0], new String[0]).intern();
+
+  private final int[] slots;
+  private final String[] names;
+  private final int hashCode;
+  private final Map<Integer, FieldLayout> extensions = new ConcurrentHashMap<>();
+  private final Set<String> fieldNames = new FieldNameSet();
+
+  private FieldLayout(int[] slots, String[] names) {
+    this.slots = slots;
+    this.names = names;
+    this.hashCode = Arrays.hashCode(slots);
+  }
+
+  /**
+   * Returns the slot of a field, assigning one if the field does not have a slot yet.
+   * 
+   * @param field A field name.
+   * @return The slot of the field.
+   */
+  public static int getSlot(String field) {
+    Integer slot = SLOTS.get(field);
+    if (slot == null) {
+      synchronized (SLOTS) {
+        slot = SLOTS.get(field);
+        if (slot == null) {
+          slot = SLOTS.size();
+          SLOTS.put(field, slot);
+        }
+      }
+    }
+
+    return slot;
+  }
+
+  /**
+   * Returns the number of fields in this layout.
+   * 
+   * @return The number of fields.
+   */
+  public int size() {
+    return slots.length;
+  }
+
+  /**
+   * Returns the index of a field in this layout.
+   * 
+   * @param field A field name.
+   * @return The index of the field, or a negative number if the field is not in this layout.
+   */
+  public int indexOf(String field) {
+    Integer slot = SLOTS.get(field);
+    return slot == null ? -1 : Arrays.binarySearch(slots, slot);
+  }
+
+  /**
+   * Returns the slot of the field at a given index. Slots increase with indices.
+   * 
+   * @param index An index in this layout.
+   * @return The slot of the field.
+   */
+  public int getSlotAt(int index) {
+    return slots[index];
+  }
+
+  /**
+   * Returns the name of the field at a given index.
+   * 
+   * @param index An index in this layout.
+   * @return The name of the field.
+   */
+  public String getFieldName(int index) {
+    return names[index];
+  }
+
+  /**
+   * Returns the names of the fields in this layout. The returned set cannot be modified.
+   * 
+   * @return The field names.
+   */
+  public Set<String> getFieldNames() {
+    return fieldNames;
+  }
+
+  /**
+   * Returns the layout that has the fields of this layout and another field.
+   * 
+   * @param field A field name.
+   * @return The extended layout, which is this layout if it already contains the field.
+   */
+  public FieldLayout with(String field) {
+    int slot = getSlot(field);
+    FieldLayout result = extensions.get(slot);
+    if (result != null) {
+      return result;
+    }
+
+    int index = Arrays.binarySearch(slots, slot);
+    if (index >= 0) {
+      return this;
+    }
+
+    index = -index - 1;
+    int size = slots.length;
+    int[] newSlots = new int[size + 1];
+    String[] newNames = new String[size + 1];
+    System.arraycopy(slots, 0, newSlots, 0, index);
+    System.arraycopy(names, 0, newNames, 0, index);
+    newSlots[index] = slot;
+    newNames[index] = field;
+    System.arraycopy(slots, index, newSlots, index + 1, size - index);
+    System.arraycopy(names, index, newNames, index + 1, size - index);
+    result = new FieldLayout(newSlots, newNames).intern();
+    extensions.put(slot, result);
+
+    return result;
+  }
+
+  /**
+   * Returns the layout that has the fields of this layout and of another one.
+   * 
+   * @param other A layout.
+   * @return The union of both layouts.
+   */
+  public FieldLayout union(FieldLayout other) {
+    if (this == other || other.slots.length == 0) {
+      return this;
+    }
+    if (slots.length == 0) {
+      return other;
+    }
+
+    int[] otherSlots = other.slots;
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < slots.length && j < otherSlots.length) {
+      if (slots[i] <= otherSlots[j]) {
+        if (slots[i] == otherSlots[j]) {
+          ++j;
+        }
+        ++i;
+      } else {
+        ++j;
+      }
+      ++size;
+    }
+    size += slots.length - i + otherSlots.length - j;
+
+    // Most unions are with a subset of one of the layouts.
+    if (size == slots.length) {
+      return this;
+    }
+    if (size == otherSlots.length) {
+      return other;
+    }
+
+    int[] newSlots = new int[size];
+    String[] newNames = new String[size];
+    i = 0;
+    j = 0;
+    for (int k = 0; k < size; ++k) {
+      if (j == otherSlots.length || i < slots.length && slots[i] <= otherSlots[j]) {
+        if (j < otherSlots.length && slots[i] == otherSlots[j]) {
+          ++j;
+        }
+        newSlots[k] = slots[i];
+        newNames[k] = names[i++];
+      } else {
+        newSlots[k] = otherSlots[j];
+        newNames[k] = other.names[j++];
+      }
+    }
+
+    return new FieldLayout(newSlots, newNames).intern();
+  }
+
+  /**
+   * Returns the layout that only has the fields at some indices of this layout.
+   * 
+   * @param indices Indices in this layout, in increasing order.
+   * @param count The number of indices to use.
+   * @return The restricted layout.
+   */
+  public FieldLayout select(int[] indices, int count) {
+    if (count == slots.length) {
+      return this;
+    }
+
+    int[] newSlots = new int[count];
+    String[] newNames = new String[count];
+    for (int k = 0; k < count; ++k) {
+      newSlots[k] = slots[indices[k]];
+      newNames[k] = names[indices[k]];
+    }
+
+    return new FieldLayout(newSlots, newNames).intern();
+  }
+
+  /**
+   * Returns an unmodifiable map view of elements stored in the order of this layout.
+   * 
+   * @param elements An array of elements with one element per field of this layout.
+   * @return A map from field names to elements.
+   */
+  public <V> Map<String, V> asMap(V[] elements) {
+    return new FieldMap<>(elements);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other || other instanceof FieldLayout
+        && Arrays.equals(this.slots, ((FieldLayout) other).slots);
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(names);
+  }
+
+  @Override
+  public FieldLayout intern() {
+    return POOL.intern(this);
+  }
+
+  private abstract class IndexIterator<T> implements Iterator<T> {
+    private int index = 0;
+
+    @Override
+    public boolean hasNext() {
+      return index < names.length;
+    }
+
+    @Override
+    public T next() {
+      if (index >= names.length) {
+        throw new NoSuchElementException();
+      }
+      return get(index++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    protected abstract T get(int index);
+  }
+
+  private class FieldNameSet extends AbstractSet<String> {
+    @Override
+    public int size() {
+      return names.length;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+      return object instanceof String && indexOf((String) object) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return new IndexIterator<String>() {
+        @Override
+        protected String get(int index) {
+          return names[index];
+        }
+      };
+    }
+  }
+
+  private class FieldMap<V> extends AbstractMap<String, V> {
+    private final V[] elements;
+
+    FieldMap(V[] elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public int size() {
+      return names.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      int index = indexOf((String) key);
+      return index >= 0 ? elements[index] : null;
+    }
+
+    @Override
+    public Set<String> keySet() {
+      return fieldNames;
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+      return new AbstractSet<Map.Entry<String, V>>() {
+        @Override
+        public int size() {
+          return names.length;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, V>> iterator() {
+          return new IndexIterator<Map.Entry<String, V>>() {
+            @Override
+            protected Map.Entry<String, V> get(int index) {
+              return new AbstractMap.SimpleImmutableEntry<>(names[index], elements[index]);
+            }
+          };
+        }
+      };
+    }
+  }
+}
@@ -26,7 +26,7 @@ import edu.psu.cse.siis.coal.field.values.FieldValue;
  * A field transformer, which models the influence of a statement of a single field.
  */
 public abstract class FieldTransformer implements Internable<FieldTransformer> {
-  private static final Pool<FieldTransformer> POOL = new Pool<>();
+  private static final Pool<FieldTransformer> POOL = new Pool<>("FieldTransformer");
 
   /**
    * Applies this field transformer to a {@link FieldValue}.
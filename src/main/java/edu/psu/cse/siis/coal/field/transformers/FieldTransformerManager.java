@@ -23,6 +23,7 @@ import java.util.Map;
 
 import soot.Value;
 import soot.jimple.Stmt;
+import edu.psu.cse.siis.coal.AnalysisContext;
 import edu.psu.cse.siis.coal.Constants;
 import edu.psu.cse.siis.coal.field.transformers.scalar.FieldScalarReplaceTransformerFactory;
 import edu.psu.cse.siis.coal.field.transformers.set.FieldAddSequenceElementTransformerFactory;
@@ -32,23 +33,25 @@ import edu.psu.cse.siis.coal.field.transformers.set.FieldRemoveTransformerFactor
 import edu.psu.cse.siis.coal.field.transformers.set.FieldReplaceTransformerFactory;
 
 /**
- * A manager singleton for field transformers, which is the entry point for generating field
- * transformers.
+ * A manager for field transformers, which is the entry point for generating field transformers.
+ * There is one instance per {@link AnalysisContext}.
  */
 public class FieldTransformerManager {
-  private static FieldTransformerManager instance = new FieldTransformerManager();
   private final Map<String, FieldTransformerFactory> fieldTransformerFactoryMap = new HashMap<>();
 
-  private FieldTransformerManager() {
+  /**
+   * Creates a manager. Use {@link #v()} to access the manager of the current analysis.
+   */
+  public FieldTransformerManager() {
   }
 
   /**
-   * Returns the singleton instance for the class.
+   * Returns the instance for the current {@link AnalysisContext}.
    * 
-   * @return The singleton instance for this class.
+   * @return The instance for the current analysis context.
    */
   public static FieldTransformerManager v() {
-    return instance;
+    return AnalysisContext.current().getFieldTransformerManager();
   }
 
   /**
@@ -26,7 +26,7 @@ import edu.psu.cse.siis.coal.Pool;
  * problem.
  */
 public abstract class FieldValue implements Internable<FieldValue> {
-  private static final Pool<FieldValue> POOL = new Pool<>();
+  private static final Pool<FieldValue> POOL = new Pool<>("FieldValue");
 
   /**
    * Returns the value represented by this field value.
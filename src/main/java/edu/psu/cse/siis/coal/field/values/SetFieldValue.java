@@ -22,6 +22,9 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
+import edu.psu.cse.siis.coal.AnalysisParameters;
+import edu.psu.cse.siis.coal.PropagationTimers;
+
 public class SetFieldValue extends FieldValue {
   private Set<Object> values;
 
@@ -31,7 +34,8 @@ public class SetFieldValue extends FieldValue {
   }
 
   /**
-   * Adds a set of values to this field value.
+   * Adds a set of values to this field value. If string widening is enabled and the field value
+   * gets too many strings, they are widened to prefix patterns.
    * 
    * @param add A set of values.
    */
@@ -43,6 +47,15 @@ public class SetFieldValue extends FieldValue {
       this.values = new HashSet<>(add.size());
     }
     this.values.addAll(add);
+
+    int limit = AnalysisParameters.v().getStringWideningLimit();
+    if (limit > 0 && this.values.size() > limit) {
+      Set<Object> widenedValues = StringWidening.widen(this.values, limit);
+      if (widenedValues != this.values) {
+        PropagationTimers.v().stringValueWidenings.incrementAndGet();
+        this.values = widenedValues;
+      }
+    }
   }
 
   /**
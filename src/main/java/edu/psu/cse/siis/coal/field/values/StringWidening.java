@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.field.values;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.psu.cse.siis.coal.Constants;
+
+/**
+ * Widening of sets of strings to prefix patterns. A string that ends with
+ * {@link Constants#ANY_STRING} describes all the strings that start with the same prefix. When a
+ * set of strings grows too large, the strings that share the longest prefixes are replaced with
+ * prefix patterns until the set is small enough. Precision is thus lost gradually, instead of the
+ * whole set being replaced with an unknown value.
+ */
+public class StringWidening {
+  private static final Comparator<Pattern> PATTERN_COMPARATOR = new Comparator<Pattern>() {
+    @Override
+    public int compare(Pattern pattern1, Pattern pattern2) {
+      int result = pattern1.prefix.compareTo(pattern2.prefix);
+      if (result != 0) {
+        return result;
+      }
+      // Patterns come before the strings they describe.
+      return Boolean.compare(pattern2.open, pattern1.open);
+    }
+  };
+
+  private StringWidening() {
+  }
+
+  /**
+   * Widens a set of strings so that it has at most a given number of elements. Strings that share
+   * the longest prefixes are merged first.
+   * 
+   * @param values A set of values.
+   * @param limit The maximum number of values, or 0 if sets should not be widened.
+   * @return The original set if it is small enough or if it contains values that are not strings,
+   *         or a new set of strings and prefix patterns that describes all the original strings.
+   */
+  public static Set<Object> widen(Set<Object> values, int limit) {
+    if (limit <= 0 || values.size() <= limit) {
+      return values;
+    }
+
+    List<Pattern> patterns = new ArrayList<>(values.size());
+    for (Object value : values) {
+      if (!(value instanceof String)) {
+        return values;
+      }
+      patterns.add(new Pattern((String) value));
+    }
+    patterns = normalize(patterns);
+
+    while (patterns.size() > limit) {
+      int size = patterns.size();
+      int[] commonPrefixLengths = new int[size - 1];
+      int maxCommonPrefixLength = 0;
+      for (int i = 0; i < size - 1; ++i) {
+        commonPrefixLengths[i] =
+            getCommonPrefixLength(patterns.get(i).prefix, patterns.get(i + 1).prefix);
+        maxCommonPrefixLength = Math.max(maxCommonPrefixLength, commonPrefixLengths[i]);
+      }
+
+      // Since patterns are sorted, each run of patterns whose neighbors share the longest common
+      // prefix is merged into a single pattern.
+      List<Pattern> mergedPatterns = new ArrayList<>(size);
+      int remaining = size;
+      int i = 0;
+      while (i < size) {
+        if (remaining > limit && i < size - 1
+            && commonPrefixLengths[i] == maxCommonPrefixLength) {
+          int j = i;
+          while (j < size - 1 && commonPrefixLengths[j] == maxCommonPrefixLength) {
+            ++j;
+          }
+          mergedPatterns.add(new Pattern(patterns.get(i).prefix.substring(0,
+              maxCommonPrefixLength), true));
+          remaining -= j - i;
+          i = j + 1;
+        } else {
+          mergedPatterns.add(patterns.get(i));
+          ++i;
+        }
+      }
+      patterns = normalize(mergedPatterns);
+    }
+
+    Set<Object> result = new HashSet<>(patterns.size());
+    for (Pattern pattern : patterns) {
+      result.add(pattern.toString());
+    }
+
+    return result;
+  }
+
+  /**
+   * Sorts patterns and removes the ones that are described by other patterns.
+   */
+  private static List<Pattern> normalize(List<Pattern> patterns) {
+    Collections.sort(patterns, PATTERN_COMPARATOR);
+
+    List<Pattern> result = new ArrayList<>(patterns.size());
+    Pattern previous = null;
+    String openPrefix = null;
+    for (Pattern pattern : patterns) {
+      if (openPrefix != null && pattern.prefix.startsWith(openPrefix) || previous != null
+          && PATTERN_COMPARATOR.compare(previous, pattern) == 0) {
+        continue;
+      }
+      result.add(pattern);
+      previous = pattern;
+      if (pattern.open) {
+        openPrefix = pattern.prefix;
+      }
+    }
+
+    return result;
+  }
+
+  private static int getCommonPrefixLength(String string1, String string2) {
+    int length = Math.min(string1.length(), string2.length());
+    for (int i = 0; i < length; ++i) {
+      if (string1.charAt(i) != string2.charAt(i)) {
+        return i;
+      }
+    }
+
+    return length;
+  }
+
+  /**
+   * A string, or a prefix pattern that describes all strings that start with a prefix.
+   */
+  private static class Pattern {
+    private final String prefix;
+    private final boolean open;
+
+    public Pattern(String value) {
+      this.open = value.endsWith(Constants.ANY_STRING);
+      this.prefix =
+          open ? value.substring(0, value.length() - Constants.ANY_STRING.length()) : value;
+    }
+
+    public Pattern(String prefix, boolean open) {
+      this.prefix = prefix;
+      this.open = open;
+    }
+
+    @Override
+    public String toString() {
+      return open ? prefix + Constants.ANY_STRING : prefix;
+    }
+  }
+}
@@ -18,12 +18,12 @@
  */
 package edu.psu.cse.siis.coal.transformers;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.Set;
 
 import edu.psu.cse.siis.coal.Internable;
 import edu.psu.cse.siis.coal.Pool;
+import edu.psu.cse.siis.coal.field.FieldLayout;
 import edu.psu.cse.siis.coal.field.transformers.FieldTransformer;
 import edu.psu.cse.siis.coal.field.values.FieldValue;
 import edu.psu.cse.siis.coal.field.values.NullFieldValue;
@@ -31,15 +31,22 @@ import edu.psu.cse.siis.coal.values.PathValue;
 
 /**
  * A path transformer, which models the influence of a single path. It is a collection of field
- * transformers.
+ * transformers, which are stored in a flat array in the order of a shared {@link FieldLayout}.
  */
 public class PathTransformer implements Internable<PathTransformer> {
-  private static final Pool<PathTransformer> POOL = new Pool<>();
+  private static final Pool<PathTransformer> POOL = new Pool<>("PathTransformer");
+  private static final FieldTransformer[] NO_FIELD_TRANSFORMERS = new FieldTransformer[0];
 
-  protected Map<String, FieldTransformer> fieldMap;
+  protected FieldLayout layout;
+  protected FieldTransformer[] fieldTransformers;
 
   public PathTransformer() {
-    this.fieldMap = new HashMap<>();
+    this(FieldLayout.EMPTY, NO_FIELD_TRANSFORMERS);
+  }
+
+  private PathTransformer(FieldLayout layout, FieldTransformer[] fieldTransformers) {
+    this.layout = layout;
+    this.fieldTransformers = fieldTransformers;
   }
 
   /**
@@ -49,7 +56,31 @@ public class PathTransformer implements Internable<PathTransformer> {
    * @param transformer The field transformer to be added.
    */
   public void addFieldTransformer(String field, FieldTransformer transformer) {
-    this.fieldMap.put(field, transformer);
+    int index = this.layout.indexOf(field);
+    if (index >= 0) {
+      this.fieldTransformers[index] = transformer;
+      return;
+    }
+
+    FieldLayout newLayout = this.layout.with(field);
+    index = newLayout.indexOf(field);
+    int size = this.fieldTransformers.length;
+    FieldTransformer[] newFieldTransformers = new FieldTransformer[size + 1];
+    System.arraycopy(this.fieldTransformers, 0, newFieldTransformers, 0, index);
+    newFieldTransformers[index] = transformer;
+    System.arraycopy(this.fieldTransformers, index, newFieldTransformers, index + 1, size
+        - index);
+    this.layout = newLayout;
+    this.fieldTransformers = newFieldTransformers;
+  }
+
+  /**
+   * Returns the names of the fields transformed by this path transformer.
+   * 
+   * @return The names of the transformed fields.
+   */
+  public Set<String> getFields() {
+    return this.layout.getFieldNames();
   }
 
   /**
@@ -59,33 +90,32 @@ public class PathTransformer implements Internable<PathTransformer> {
    * @return The resulting PathValue.
    */
   public PathValue computeTarget(PathValue source) {
-    Map<String, FieldValue> secondFieldMap = source.getFieldMap();
-    PathValue result = new PathValue();
-
-    for (Map.Entry<String, FieldTransformer> entry : this.fieldMap.entrySet()) {
-      String field = entry.getKey();
-      FieldTransformer fieldTransformer = entry.getValue();
-      FieldValue fieldValue = secondFieldMap.get(field);
-
-      if (fieldValue == null) {
-        fieldValue = NullFieldValue.v();
-      }
-
-      if (fieldTransformer != null) {
-        result.addFieldEntry(field, fieldTransformer.apply(fieldValue));
+    FieldLayout sourceLayout = source.getFieldLayout();
+    FieldLayout resultLayout = this.layout.union(sourceLayout);
+    FieldValue[] resultFieldValues = new FieldValue[resultLayout.size()];
+
+    // All layouts are sorted by slot, so the fields of this transformer and of the source are
+    // matched by walking both layouts along the result layout.
+    int i = 0;
+    int j = 0;
+    for (int k = 0; k < resultFieldValues.length; ++k) {
+      int slot = resultLayout.getSlotAt(k);
+      boolean inSource = j < sourceLayout.size() && sourceLayout.getSlotAt(j) == slot;
+      FieldValue fieldValue = inSource ? source.getFieldValueAt(j++) : null;
+
+      if (i < this.layout.size() && this.layout.getSlotAt(i) == slot) {
+        FieldTransformer fieldTransformer = this.fieldTransformers[i++];
+        if (fieldValue == null) {
+          fieldValue = NullFieldValue.v();
+        }
+        resultFieldValues[k] =
+            fieldTransformer != null ? fieldTransformer.apply(fieldValue) : fieldValue;
       } else {
-        result.addFieldEntry(field, fieldValue);
-      }
-    }
-
-    for (Map.Entry<String, FieldValue> entry : secondFieldMap.entrySet()) {
-      String field = entry.getKey();
-      if (!this.fieldMap.containsKey(field)) {
-        result.addFieldEntry(field, entry.getValue());
+        resultFieldValues[k] = fieldValue;
       }
     }
 
-    return result;
+    return new PathValue(resultLayout, resultFieldValues);
   }
 
   /**
@@ -99,31 +129,55 @@ public class PathTransformer implements Internable<PathTransformer> {
       return secondPathTransformer;
     }
 
-    PathTransformer result = new PathTransformer();
-    Map<String, FieldTransformer> secondFieldMap = secondPathTransformer.fieldMap;
-
-    // A: set of fields in this transformer, B: set of fields in the second
-    // transformer.
-    // We compute A \ B and A & B.
-    for (Map.Entry<String, FieldTransformer> entry : fieldMap.entrySet()) {
-      String field = entry.getKey();
-      FieldTransformer fieldTransformer = entry.getValue();
-      if (fieldTransformer != null) {
-        FieldTransformer secondFieldTransformer = secondFieldMap.get(field);
+    FieldLayout secondLayout = secondPathTransformer.layout;
+    FieldTransformer[] secondFieldTransformers = secondPathTransformer.fieldTransformers;
+    FieldLayout unionLayout = this.layout.union(secondLayout);
+    FieldTransformer[] resultFieldTransformers = new FieldTransformer[unionLayout.size()];
+    int[] resultIndices = null;
+    int count = 0;
+
+    // A: set of fields in this transformer, B: set of fields in the second transformer.
+    // We compute A \ B, A & B and B \ A in a single pass. Fields of A with a null transformer are
+    // left out of the result.
+    int i = 0;
+    int j = 0;
+    for (int k = 0; k < resultFieldTransformers.length; ++k) {
+      int slot = unionLayout.getSlotAt(k);
+      boolean inSecond = j < secondLayout.size() && secondLayout.getSlotAt(j) == slot;
+      FieldTransformer secondFieldTransformer = inSecond ? secondFieldTransformers[j++] : null;
+
+      FieldTransformer fieldTransformer;
+      if (i < this.layout.size() && this.layout.getSlotAt(i) == slot) {
+        fieldTransformer = this.fieldTransformers[i++];
+        if (fieldTransformer == null) {
+          if (resultIndices == null) {
+            resultIndices = new int[resultFieldTransformers.length];
+            for (int l = 0; l < k; ++l) {
+              resultIndices[l] = l;
+            }
+          }
+          continue;
+        }
         if (secondFieldTransformer != null) {
           fieldTransformer = fieldTransformer.compose(secondFieldTransformer);
         }
-        result.addFieldTransformer(field, fieldTransformer);
+      } else {
+        fieldTransformer = secondFieldTransformer;
       }
-    }
 
-    // We compute B \ A.
-    for (Map.Entry<String, FieldTransformer> entry : secondFieldMap.entrySet()) {
-      String field = entry.getKey();
-      if (this.fieldMap.containsKey(field)) {
-        continue;
+      if (resultIndices != null) {
+        resultIndices[count] = k;
       }
-      result.addFieldTransformer(field, entry.getValue());
+      resultFieldTransformers[count++] = fieldTransformer;
+    }
+
+    PathTransformer result;
+    if (resultIndices == null) {
+      result = new PathTransformer(unionLayout, resultFieldTransformers);
+    } else {
+      result =
+          new PathTransformer(unionLayout.select(resultIndices, count), Arrays.copyOf(
+              resultFieldTransformers, count));
     }
 
     return result.intern();
@@ -131,18 +185,25 @@ public class PathTransformer implements Internable<PathTransformer> {
 
   @Override
   public String toString() {
-    return fieldMap != null ? fieldMap.toString() : "null";
+    return this.layout.asMap(this.fieldTransformers).toString();
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(this.fieldMap);
+    return 31 * this.layout.hashCode() + Arrays.hashCode(this.fieldTransformers);
   }
 
   @Override
   public boolean equals(Object other) {
-    return other instanceof PathTransformer
-        && Objects.equals(this.fieldMap, ((PathTransformer) other).fieldMap);
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof PathTransformer)) {
+      return false;
+    }
+    PathTransformer secondPathTransformer = (PathTransformer) other;
+    return this.layout.equals(secondPathTransformer.layout)
+        && Arrays.equals(this.fieldTransformers, secondPathTransformer.fieldTransformers);
   }
 
   @Override
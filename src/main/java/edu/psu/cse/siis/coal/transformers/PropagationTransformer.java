@@ -27,9 +27,10 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import edu.psu.cse.siis.coal.Constants;
+import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Internable;
 import edu.psu.cse.siis.coal.Pool;
+import edu.psu.cse.siis.coal.ValueLimits;
 import edu.psu.cse.siis.coal.values.BasePropagationValue;
 import edu.psu.cse.siis.coal.values.PathValue;
 import edu.psu.cse.siis.coal.values.PropagationValue;
@@ -41,7 +42,7 @@ import edu.psu.cse.siis.coal.values.TopPropagationValue;
  */
 public class PropagationTransformer implements EdgeFunction<BasePropagationValue>,
     Internable<PropagationTransformer> {
-  private static final Pool<PropagationTransformer> POOL = new Pool<>();
+  private static final Pool<PropagationTransformer> POOL = new Pool<>("PropagationTransformer");
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -85,11 +86,18 @@ public class PropagationTransformer implements EdgeFunction<BasePropagationValue
       Set<PathTransformer> secondPathTransformers =
           ((PropagationTransformer) secondFunction).pathTransformers;
       PropagationTransformer result = new PropagationTransformer();
+      ValueLimits valueLimits = AnalysisParameters.v().getValueLimits();
+      ValueLimits.Limit limit = null;
+      if (valueLimits.mayBeExceededBy(pathTransformers.size() * secondPathTransformers.size())) {
+        Set<String> fields = getFields(pathTransformers);
+        fields.addAll(getFields(secondPathTransformers));
+        limit = valueLimits.getLimit(fields);
+      }
 
       for (PathTransformer pathTransformer : pathTransformers) {
         for (PathTransformer secondPathTransformer : secondPathTransformers) {
           result.pathTransformers.add(pathTransformer.compose(secondPathTransformer));
-          if (result.pathTransformers.size() > Constants.VALUE_LIMIT) {
+          if (limit != null && limit.isExceededBy(result.pathTransformers.size())) {
             return TopPropagationTransformer.v();
           }
         }
@@ -112,7 +120,10 @@ public class PropagationTransformer implements EdgeFunction<BasePropagationValue
       result.pathTransformers.addAll(this.pathTransformers);
       result.pathTransformers.addAll(((PropagationTransformer) otherFunction).pathTransformers);
 
-      if (result.pathTransformers.size() > Constants.VALUE_LIMIT) {
+      ValueLimits valueLimits = AnalysisParameters.v().getValueLimits();
+      int size = result.pathTransformers.size();
+      if (valueLimits.mayBeExceededBy(size)
+          && valueLimits.getLimit(getFields(result.pathTransformers)).isExceededBy(size)) {
         return TopPropagationTransformer.v();
       }
       return result.intern();
@@ -120,6 +131,15 @@ public class PropagationTransformer implements EdgeFunction<BasePropagationValue
     return this;
   }
 
+  private static Set<String> getFields(Set<PathTransformer> pathTransformers) {
+    Set<String> result = new HashSet<>();
+    for (PathTransformer pathTransformer : pathTransformers) {
+      result.addAll(pathTransformer.getFields());
+    }
+
+    return result;
+  }
+
   @Override
   public boolean equalTo(EdgeFunction<BasePropagationValue> other) {
     if (!(other instanceof PropagationTransformer)) {
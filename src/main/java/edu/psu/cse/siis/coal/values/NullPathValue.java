@@ -26,6 +26,7 @@ public class NullPathValue extends PathValue {
   private static final NullPathValue instance = new NullPathValue();
 
   private NullPathValue() {
+    super(NULL_ID);
   }
 
   /**
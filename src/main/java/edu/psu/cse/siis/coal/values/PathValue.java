@@ -19,15 +19,19 @@
 package edu.psu.cse.siis.coal.values;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import edu.psu.cse.siis.coal.Internable;
+import edu.psu.cse.siis.coal.Pool;
 import edu.psu.cse.siis.coal.PropagationSolver;
+import edu.psu.cse.siis.coal.field.FieldLayout;
 import edu.psu.cse.siis.coal.field.values.FieldValue;
 import edu.psu.cse.siis.coal.field.values.IntermediateFieldValue;
 import edu.psu.cse.siis.coal.field.values.NullFieldValue;
@@ -37,28 +41,120 @@ import edu.psu.cse.siis.coal.field.values.SetFieldValue;
 /**
  * A COAL value for a single execution path. This is essentially a collection of field values.
  * 
+ * Field values are stored in a flat array in the order of a shared {@link FieldLayout}, rather
+ * than in a map.
+ * 
+ * A path value can be modified until {@link #intern()} is called on it. Interned path values are
+ * immutable and have a unique identifier, which {@link PropagationValue} uses to represent sets of
+ * path values.
+ * 
  * @see FieldValue
  */
-public class PathValue {
-  private Map<String, FieldValue> fieldMap = new HashMap<>();
+public class PathValue implements Internable<PathValue> {
+  private static final Pool<PathValue> POOL = new Pool<>("PathValue");
+  static final int NULL_ID = 0;
+  private static final AtomicInteger NEXT_ID = new AtomicInteger(NULL_ID + 1);
+  private static final FieldValue[] NO_FIELD_VALUES = new FieldValue[0];
+
+  private FieldLayout layout = FieldLayout.EMPTY;
+  private FieldValue[] fieldValues = NO_FIELD_VALUES;
+  private int id = -1;
+  private int hashCode;
+
+  public PathValue() {
+  }
+
+  /**
+   * Creates a path value from field values stored in the order of a layout. The array is not
+   * copied and should not be modified afterwards.
+   * 
+   * @param layout A field layout.
+   * @param fieldValues The field values, one for each field of the layout.
+   */
+  public PathValue(FieldLayout layout, FieldValue[] fieldValues) {
+    if (layout.size() != fieldValues.length) {
+      throw new IllegalArgumentException("Expected " + layout.size() + " field values but got "
+          + fieldValues.length);
+    }
+    this.layout = layout;
+    this.fieldValues = fieldValues;
+  }
+
+  /**
+   * Creates a path value that is interned from the start. This is only used for
+   * {@link NullPathValue}.
+   * 
+   * @param id The identifier of the path value.
+   */
+  PathValue(int id) {
+    this.id = id;
+  }
 
   /**
    * Adds a field value.
    * 
    * @param field The name of the field that should be added.
    * @param fieldValue The {@link FieldValue} to be added.
+   * @throws UnsupportedOperationException if this path value has been interned.
    */
   public void addFieldEntry(String field, FieldValue fieldValue) {
-    this.fieldMap.put(field, fieldValue);
+    if (this.id >= 0) {
+      throw new UnsupportedOperationException("Cannot modify interned path value " + this);
+    }
+
+    int index = this.layout.indexOf(field);
+    if (index >= 0) {
+      this.fieldValues[index] = fieldValue;
+      return;
+    }
+
+    FieldLayout newLayout = this.layout.with(field);
+    index = newLayout.indexOf(field);
+    int size = this.fieldValues.length;
+    FieldValue[] newFieldValues = new FieldValue[size + 1];
+    System.arraycopy(this.fieldValues, 0, newFieldValues, 0, index);
+    newFieldValues[index] = fieldValue;
+    System.arraycopy(this.fieldValues, index, newFieldValues, index + 1, size - index);
+    this.layout = newLayout;
+    this.fieldValues = newFieldValues;
   }
 
   /**
-   * Returns the mapping between field names and field values.
+   * Returns the unique identifier of this path value.
+   * 
+   * @return The identifier of this path value, or -1 if it has not been interned.
+   */
+  public int getId() {
+    return this.id;
+  }
+
+  /**
+   * Returns the mapping between field names and field values. The returned map cannot be
+   * modified.
    * 
    * @return The mapping between field names and field values.
    */
   public Map<String, FieldValue> getFieldMap() {
-    return this.fieldMap;
+    return this.layout.asMap(this.fieldValues);
+  }
+
+  /**
+   * Returns the layout of the fields of this path value.
+   * 
+   * @return The field layout.
+   */
+  public FieldLayout getFieldLayout() {
+    return this.layout;
+  }
+
+  /**
+   * Returns the value of the field at a given index of the field layout.
+   * 
+   * @param index An index in the field layout.
+   * @return The value of the field.
+   */
+  public FieldValue getFieldValueAt(int index) {
+    return this.fieldValues[index];
   }
 
   /**
@@ -68,7 +164,8 @@ public class PathValue {
    * @return The value of the field if it was found, null otherwise.
    */
   public FieldValue getFieldValue(String field) {
-    return this.fieldMap.get(field);
+    int index = this.layout.indexOf(field);
+    return index >= 0 ? this.fieldValues[index] : null;
   }
 
   /**
@@ -80,7 +177,7 @@ public class PathValue {
    */
   @SuppressWarnings("unchecked")
   public <T> Set<T> getSetFieldValue(String field, Class<T> type) {
-    FieldValue fieldValue = this.fieldMap.get(field);
+    FieldValue fieldValue = getFieldValue(field);
     if (fieldValue == null || fieldValue == NullFieldValue.v()) {
       return null;
     }
@@ -116,7 +213,7 @@ public class PathValue {
    * @return True if there is a field by the name indicated that is not null.
    */
   public boolean containsNonNullFieldValue(String field) {
-    FieldValue fieldValue = fieldMap.get(field);
+    FieldValue fieldValue = getFieldValue(field);
     return fieldValue != null && fieldValue != NullFieldValue.v();
   }
 
@@ -129,7 +226,7 @@ public class PathValue {
    * @throws RuntimeException if the field is not a scalar of the specified type.
    */
   public <T> T getScalarFieldValue(String field, Class<T> type) {
-    FieldValue fieldValue = this.fieldMap.get(field);
+    FieldValue fieldValue = getFieldValue(field);
     if (fieldValue == null || fieldValue == NullFieldValue.v()) {
       return null;
     }
@@ -160,8 +257,8 @@ public class PathValue {
    * @return True if this object contains an IntermediateFieldValue.
    */
   public boolean containsIntermediateField() {
-    for (Map.Entry<String, FieldValue> entry : fieldMap.entrySet()) {
-      if (entry.getValue() instanceof IntermediateFieldValue) {
+    for (FieldValue fieldValue : this.fieldValues) {
+      if (fieldValue instanceof IntermediateFieldValue) {
         return true;
       }
     }
@@ -179,12 +276,12 @@ public class PathValue {
     List<String> partialValueFields = new ArrayList<>();
     Map<String, FieldValue> partialFieldMap = new HashMap<>();
 
-    for (Map.Entry<String, FieldValue> entry : fieldMap.entrySet()) {
-      FieldValue fieldValue = entry.getValue();
+    for (int i = 0; i < this.fieldValues.length; ++i) {
+      FieldValue fieldValue = this.fieldValues[i];
       if (fieldValue instanceof IntermediateFieldValue) {
-        partialValueFields.add(entry.getKey());
+        partialValueFields.add(this.layout.getFieldName(i));
       } else {
-        partialFieldMap.put(entry.getKey(), fieldValue);
+        partialFieldMap.put(this.layout.getFieldName(i), fieldValue);
       }
     }
 
@@ -193,14 +290,16 @@ public class PathValue {
     for (String partialValueField : partialValueFields) {
       fieldMaps =
           addFieldValuesToFieldMaps(fieldMaps, partialValueField,
-              ((IntermediateFieldValue) fieldMap.get(partialValueField)).makeFinalFieldValues(
+              ((IntermediateFieldValue) getFieldValue(partialValueField)).makeFinalFieldValues(
                   partialValueField, solver));
     }
 
     Set<PathValue> result = new HashSet<>();
     for (Map<String, FieldValue> newFieldMap : fieldMaps) {
       PathValue newBranchValue = new PathValue();
-      newBranchValue.fieldMap = newFieldMap;
+      for (Map.Entry<String, FieldValue> entry : newFieldMap.entrySet()) {
+        newBranchValue.addFieldEntry(entry.getKey(), entry.getValue());
+      }
       result.add(newBranchValue);
     }
 
@@ -254,12 +353,12 @@ public class PathValue {
   @Override
   public String toString() {
     StringBuilder result = new StringBuilder();
-    List<String> parts = new ArrayList<>(this.fieldMap.size());
+    List<String> parts = new ArrayList<>(this.fieldValues.length);
 
-    for (Map.Entry<String, FieldValue> entry : this.fieldMap.entrySet()) {
-      FieldValue value = entry.getValue();
+    for (int i = 0; i < this.fieldValues.length; ++i) {
+      FieldValue value = this.fieldValues[i];
       String valueString = value == null ? "null" : value.toString();
-      parts.add(entry.getKey() + "=" + valueString + ", ");
+      parts.add(this.layout.getFieldName(i) + "=" + valueString + ", ");
     }
     Collections.sort(parts);
 
@@ -271,12 +370,41 @@ public class PathValue {
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(this.fieldMap);
+    return this.id >= 0 ? this.hashCode : computeHashCode();
   }
 
   @Override
   public boolean equals(Object other) {
-    return other instanceof PathValue
-        && Objects.equals(this.fieldMap, ((PathValue) other).fieldMap);
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof PathValue)) {
+      return false;
+    }
+    PathValue secondPathValue = (PathValue) other;
+    return this.layout.equals(secondPathValue.layout)
+        && Arrays.equals(this.fieldValues, secondPathValue.fieldValues);
+  }
+
+  private int computeHashCode() {
+    return 31 * this.layout.hashCode() + Arrays.hashCode(this.fieldValues);
+  }
+
+  @Override
+  public PathValue intern() {
+    if (this.id >= 0) {
+      return this;
+    }
+
+    // The identifier and hash code must be set before the value is published by the pool. If an
+    // equal value was interned first, the identifier of this one is discarded.
+    this.hashCode = computeHashCode();
+    this.id = NEXT_ID.getAndIncrement();
+    PathValue result = POOL.intern(this);
+    if (result != this) {
+      this.id = -1;
+    }
+
+    return result;
   }
 }
@@ -18,52 +18,84 @@
  */
 package edu.psu.cse.siis.coal.values;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import edu.psu.cse.siis.coal.Constants;
+import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Internable;
 import edu.psu.cse.siis.coal.Pool;
 import edu.psu.cse.siis.coal.PropagationSolver;
+import edu.psu.cse.siis.coal.ValueLimits;
 import edu.psu.cse.siis.coal.field.values.FieldValue;
 import edu.psu.cse.siis.coal.field.values.IntermediateFieldValue;
 import edu.psu.cse.siis.coal.field.values.NullFieldValue;
 
 /**
  * A COAL propagation value, which is simply a collection of {@link PathValue} elements.
+ * 
+ * Path values are interned and stored in an array sorted by path value identifier, so that joins
+ * are merges of sorted arrays and equality checks are comparisons of identifier arrays. A
+ * propagation value can be modified until {@link #intern()} is called on it. Interned propagation
+ * values are immutable and equal interned values are identical.
  */
 public class PropagationValue implements BasePropagationValue, Internable<PropagationValue> {
-  private static final Pool<PropagationValue> POOL = new Pool<>();
+  private static final Pool<PropagationValue> POOL = new Pool<>("PropagationValue");
+  private static final PathValue[] NO_PATH_VALUES = new PathValue[0];
+  private static final int[] NO_IDS = new int[0];
 
-  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private static final Logger logger = LoggerFactory.getLogger(PropagationValue.class);
+  private static volatile boolean interningWarningLogged = false;
 
-  private Set<PathValue> pathValues = new HashSet<>();
+  private PathValue[] pathValues = NO_PATH_VALUES;
+  private int[] ids = NO_IDS;
+  private int hashCode = Arrays.hashCode(NO_IDS);
+  private boolean interned = false;
 
   /**
-   * Returns the path values contained in this object.
+   * Returns the path values contained in this object. The returned set cannot be modified.
    * 
    * @return The path values contained in this object.
    * 
    * @see PathValue
    */
   public Set<PathValue> getPathValues() {
-    return this.pathValues;
+    return new PathValueSet();
   }
 
   /**
-   * Adds a {@link PathValue} to this propagation value.
+   * Adds a {@link PathValue} to this propagation value. The path value is interned.
    * 
    * @param pathValue A PathValue.
+   * @throws RuntimeException if this propagation value has been interned.
    */
   public void addPathValue(PathValue pathValue) {
-    this.pathValues.add(pathValue);
+    checkNotInterned();
+    pathValue = pathValue.intern();
+    int index = Arrays.binarySearch(this.ids, pathValue.getId());
+    if (index >= 0) {
+      return;
+    }
+
+    index = -index - 1;
+    int size = this.ids.length;
+    PathValue[] newPathValues = new PathValue[size + 1];
+    int[] newIds = new int[size + 1];
+    System.arraycopy(this.pathValues, 0, newPathValues, 0, index);
+    System.arraycopy(this.ids, 0, newIds, 0, index);
+    newPathValues[index] = pathValue;
+    newIds[index] = pathValue.getId();
+    System.arraycopy(this.pathValues, index, newPathValues, index + 1, size - index);
+    System.arraycopy(this.ids, index, newIds, index + 1, size - index);
+    setPathValues(newPathValues, newIds);
   }
 
   /**
@@ -79,13 +111,19 @@ public class PropagationValue implements BasePropagationValue, Internable<Propag
         FieldValue nullFieldValue = NullFieldValue.v();
         result.add(nullFieldValue);
       } else {
-        result.add(pathValue.getFieldMap().get(field));
+        result.add(pathValue.getFieldValue(field));
       }
     }
 
     return result;
   }
 
+  private static void addFields(PathValue[] pathValues, Set<String> fields) {
+    for (PathValue pathValue : pathValues) {
+      fields.addAll(pathValue.getFieldLayout().getFieldNames());
+    }
+  }
+
   /**
    * Joins this value with another one.
    * 
@@ -93,13 +131,62 @@ public class PropagationValue implements BasePropagationValue, Internable<Propag
    * @return The resulting join.
    */
   public BasePropagationValue joinWith(PropagationValue other) {
-    if (this.pathValues.size() + other.pathValues.size() > Constants.VALUE_LIMIT) {
-      return TopPropagationValue.v();
+    ValueLimits valueLimits = AnalysisParameters.v().getValueLimits();
+    int maxSize = this.ids.length + other.ids.length;
+    if (valueLimits.mayBeExceededBy(maxSize)) {
+      Set<String> fields = new HashSet<>();
+      addFields(this.pathValues, fields);
+      addFields(other.pathValues, fields);
+      if (valueLimits.getLimit(fields).isExceededBy(maxSize)) {
+        return TopPropagationValue.v();
+      }
+    }
+    if (this == other || other.ids.length == 0) {
+      return this.intern();
+    }
+    if (this.ids.length == 0) {
+      return other.intern();
+    }
+
+    int[] firstIds = this.ids;
+    int[] secondIds = other.ids;
+    PathValue[] mergedPathValues = new PathValue[firstIds.length + secondIds.length];
+    int[] mergedIds = new int[mergedPathValues.length];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < firstIds.length && j < secondIds.length) {
+      if (firstIds[i] < secondIds[j]) {
+        mergedPathValues[size] = this.pathValues[i];
+        mergedIds[size++] = firstIds[i++];
+      } else if (firstIds[i] > secondIds[j]) {
+        mergedPathValues[size] = other.pathValues[j];
+        mergedIds[size++] = secondIds[j++];
+      } else {
+        mergedPathValues[size] = this.pathValues[i];
+        mergedIds[size++] = firstIds[i++];
+        ++j;
+      }
+    }
+    while (i < firstIds.length) {
+      mergedPathValues[size] = this.pathValues[i];
+      mergedIds[size++] = firstIds[i++];
+    }
+    while (j < secondIds.length) {
+      mergedPathValues[size] = other.pathValues[j];
+      mergedIds[size++] = secondIds[j++];
+    }
+
+    // If one value contains the other one, the join is the larger value.
+    if (size == firstIds.length) {
+      return this.intern();
+    }
+    if (size == secondIds.length) {
+      return other.intern();
     }
 
     PropagationValue result = new PropagationValue();
-    result.pathValues.addAll(this.pathValues);
-    result.pathValues.addAll(other.pathValues);
+    result.setPathValues(Arrays.copyOf(mergedPathValues, size), Arrays.copyOf(mergedIds, size));
 
     return result.intern();
   }
@@ -121,38 +208,83 @@ public class PropagationValue implements BasePropagationValue, Internable<Propag
   }
 
   /**
-   * Computes a non-intermediate value from this value.
+   * Computes a non-intermediate value from this value, which is modified in place.
+   * 
+   * The values returned by the solver are interned and shared between statements, so modifying
+   * them also modifies the value at every statement that shares it.
    * 
    * @param solver A propagation solver.
+   * @deprecated Use {@link #getFinalValue(PropagationSolver)}, which returns the final value
+   *             without modifying this value.
    */
+  @Deprecated
   public void makeFinalValue(PropagationSolver solver) {
     if (!isIntermediateValue()) {
       return;
     }
 
+    if (this.interned && !interningWarningLogged) {
+      interningWarningLogged = true;
+      logger.warn("makeFinalValue modifies interned propagation values in place. "
+          + "Use getFinalValue instead.");
+    }
+    PropagationValue finalValue = computeFinalValue(solver);
+    setPathValues(finalValue.pathValues, finalValue.ids);
+  }
+
+  /**
+   * Returns a non-intermediate value computed from this value. This value is not modified.
+   * 
+   * @param solver A propagation solver.
+   * @return The interned non-intermediate value.
+   */
+  public PropagationValue getFinalValue(PropagationSolver solver) {
+    if (!isIntermediateValue()) {
+      return this.intern();
+    }
+
+    return computeFinalValue(solver).intern();
+  }
+
+  private PropagationValue computeFinalValue(PropagationSolver solver) {
     if (logger.isDebugEnabled()) {
       logger.debug("Making final value for " + this.toString());
     }
-    Set<PathValue> finalPathValues = new HashSet<>();
+    PropagationValue result = new PropagationValue();
 
     for (PathValue pathValue : this.pathValues) {
       if (pathValue.containsIntermediateField()) {
-        finalPathValues.addAll(pathValue.makeFinalBranchValues(solver));
+        for (PathValue finalPathValue : pathValue.makeFinalBranchValues(solver)) {
+          result.addPathValue(finalPathValue);
+        }
       } else {
-        finalPathValues.add(pathValue);
+        result.addPathValue(pathValue);
       }
     }
 
     if (logger.isDebugEnabled()) {
-      logger.debug("Transformed to " + finalPathValues.toString());
+      logger.debug("Transformed to " + result.getPathValues().toString());
+    }
+
+    return result;
+  }
+
+  private void setPathValues(PathValue[] pathValues, int[] ids) {
+    this.pathValues = pathValues;
+    this.ids = ids;
+    this.hashCode = Arrays.hashCode(ids);
+  }
+
+  private void checkNotInterned() {
+    if (this.interned) {
+      throw new RuntimeException("Cannot modify interned propagation value " + this);
     }
-    this.pathValues = finalPathValues;
   }
 
   @Override
   public String toString() {
-    StringBuilder result = new StringBuilder("Value: " + this.pathValues.size() + " path values\n");
-    List<String> parts = new ArrayList<>(this.pathValues.size());
+    StringBuilder result = new StringBuilder("Value: " + this.pathValues.length + " path values\n");
+    List<String> parts = new ArrayList<>(this.pathValues.length);
     for (PathValue pathValue : this.pathValues) {
       parts.add("  " + pathValue.toString() + "\n");
     }
@@ -167,17 +299,58 @@ public class PropagationValue implements BasePropagationValue, Internable<Propag
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(this.pathValues);
+    return this.hashCode;
   }
 
   @Override
   public boolean equals(Object other) {
-    return other instanceof PropagationValue
-        && Objects.equals(this.pathValues, ((PropagationValue) other).pathValues);
+    return this == other || other instanceof PropagationValue
+        && this.hashCode == ((PropagationValue) other).hashCode
+        && Arrays.equals(this.ids, ((PropagationValue) other).ids);
   }
 
   @Override
   public PropagationValue intern() {
-    return POOL.intern(this);
+    if (this.interned) {
+      return this;
+    }
+
+    this.interned = true;
+    PropagationValue result = POOL.intern(this);
+    if (result != this) {
+      this.interned = false;
+    }
+
+    return result;
+  }
+
+  /**
+   * An unmodifiable view of the path values of a propagation value.
+   */
+  private class PathValueSet extends AbstractSet<PathValue> {
+    @Override
+    public Iterator<PathValue> iterator() {
+      return Collections.unmodifiableList(Arrays.asList(pathValues)).iterator();
+    }
+
+    @Override
+    public int size() {
+      return pathValues.length;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+      if (!(object instanceof PathValue)) {
+        return false;
+      }
+      PathValue pathValue = (PathValue) object;
+      int id = pathValue.getId();
+      if (id >= 0) {
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 && pathValues[index] == pathValue;
+      }
+
+      return super.contains(object);
+    }
   }
 }
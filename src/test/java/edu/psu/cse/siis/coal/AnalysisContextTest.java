@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AnalysisContextTest {
+
+  @After
+  public void tearDown() {
+    AnalysisContext.setCurrent(null);
+  }
+
+  @Test
+  public void testSeparateState() {
+    AnalysisContext context = new AnalysisContext();
+    AnalysisContext previous = AnalysisContext.setCurrent(context);
+
+    assertSame(AnalysisContext.getDefault(), previous);
+    assertSame(context.getAnalysisParameters(), AnalysisParameters.v());
+    assertNotSame(AnalysisContext.getDefault().getAnalysisParameters(), AnalysisParameters.v());
+    assertNotSame(AnalysisContext.getDefault().getResults(), Results.getResults());
+  }
+
+  @Test
+  public void testInheritedContext() throws InterruptedException {
+    AnalysisContext context = new AnalysisContext();
+    AnalysisContext.setCurrent(context);
+    final AtomicReference<PropagationTimers> timers = new AtomicReference<>();
+
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        timers.set(PropagationTimers.v());
+      }
+    });
+    thread.start();
+    thread.join();
+
+    assertSame(context.getPropagationTimers(), timers.get());
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import edu.psu.cse.siis.coal.arguments.ConstraintCollector;
+
+public class AnalysisServerTest {
+
+  @After
+  public void tearDown() {
+    AnalysisContext.setCurrent(null);
+  }
+
+  @Test
+  public void testServe() throws IOException, ReflectiveOperationException {
+    RecordingAnalysis analysis = new RecordingAnalysis();
+    String[] serverArguments = { "-server", "-model", "model", "-cp", "android.jar" };
+    AnalysisServer<DefaultCommandLineArguments> server =
+        new AnalysisServer<>(analysis, new DefaultCommandLineParser(),
+            DefaultCommandLineArguments.class, serverArguments);
+    String input = "-in first.jar\n\n-in second.jar\n-in fail.jar\n-unknown\nshutdown\n-in x\n";
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    server.serve(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+
+    String[] responses = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertEquals(4, responses.length);
+    assertTrue(responses[0].startsWith("OK 1 total="));
+    assertTrue(responses[1].startsWith("OK 2 total="));
+    assertEquals("ERROR 3 Fatal analysis error", responses[2]);
+    assertEquals("ERROR 4 Could not parse job arguments", responses[3]);
+    assertArrayEquals(new String[] { "first.jar", "second.jar", "fail.jar" },
+        analysis.inputs.toArray());
+    assertNotSame(analysis.contexts.get(0), analysis.contexts.get(1));
+    // The string analysis state left by a job is reset before the next one.
+    assertFalse(analysis.stateLeftByPreviousJob);
+  }
+
+  private static Field getGlobalCollectionField() throws ReflectiveOperationException {
+    Field field = ConstraintCollector.class.getDeclaredField("done_globalCollection");
+    field.setAccessible(true);
+    return field;
+  }
+
+  private static class RecordingAnalysis extends Analysis<DefaultCommandLineArguments> {
+    private final List<String> inputs = new ArrayList<>();
+    private final List<AnalysisContext> contexts = new ArrayList<>();
+    private boolean stateLeftByPreviousJob = false;
+
+    @Override
+    public boolean performAnalysis(DefaultCommandLineArguments commandLineArguments,
+        AnalysisContext context) {
+      inputs.add(commandLineArguments.getInput());
+      contexts.add(context);
+      try {
+        Field field = getGlobalCollectionField();
+        stateLeftByPreviousJob |= field.getBoolean(null);
+        // Simulate the global constraint collection of an analysis.
+        field.setBoolean(null, true);
+      } catch (ReflectiveOperationException e) {
+        throw new RuntimeException(e);
+      }
+
+      return !commandLineArguments.getInput().equals("fail.jar");
+    }
+
+    @Override
+    protected void registerFieldTransformerFactories(
+        DefaultCommandLineArguments commandLineArguments) {
+    }
+
+    @Override
+    protected void registerArgumentValueAnalyses(DefaultCommandLineArguments commandLineArguments) {
+    }
+
+    @Override
+    protected void registerMethodReturnValueAnalyses(
+        DefaultCommandLineArguments commandLineArguments) {
+    }
+
+    @Override
+    protected void initializeAnalysis(DefaultCommandLineArguments commandLineArguments) {
+    }
+
+    @Override
+    protected void processResults(DefaultCommandLineArguments commandLineArguments) {
+    }
+
+    @Override
+    protected void finalizeAnalysis(DefaultCommandLineArguments commandLineArguments) {
+    }
+
+    @Override
+    protected void handleFatalAnalysisException(DefaultCommandLineArguments commandLineArguments,
+        FatalAnalysisException exception) {
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PoolTest {
+
+  @After
+  public void tearDown() {
+    Pool.beginAnalysis(Pool.Mode.STRONG);
+  }
+
+  @Test
+  public void testWeakIntern() {
+    Pool.beginAnalysis(Pool.Mode.WEAK);
+    Pool<String> pool = new Pool<>("test", false);
+    String first = new String("value");
+    String second = new String("value");
+
+    assertSame(first, pool.intern(first));
+    assertSame(first, pool.intern(second));
+    assertEquals(1, pool.size());
+    assertEquals(1, pool.getHits());
+    assertEquals(1, pool.getMisses());
+  }
+
+  @Test
+  public void testPerAnalysisClear() {
+    Pool.beginAnalysis(Pool.Mode.PER_ANALYSIS);
+    Pool<String> pool = new Pool<>("test", false);
+    String first = new String("value");
+    String second = new String("value");
+
+    assertSame(first, pool.intern(first));
+    Pool.beginAnalysis(Pool.Mode.PER_ANALYSIS);
+    assertEquals(0, pool.size());
+    assertEquals(0, pool.getHits());
+    assertNotSame(first, pool.intern(second));
+  }
+
+  @Test
+  public void testRegistration() {
+    Pool<String> unregisteredPool = new Pool<>("test", false);
+    Pool<String> registeredPool = new Pool<>("test");
+
+    assertFalse(Pool.getPools().contains(unregisteredPool));
+    assertTrue(Pool.getPools().contains(registeredPool));
+    registeredPool.close();
+    assertFalse(Pool.getPools().contains(registeredPool));
+  }
+}
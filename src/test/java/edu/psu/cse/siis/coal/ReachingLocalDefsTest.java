@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import soot.IntType;
+import soot.Local;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.Stmt;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.scalar.LocalDefs;
+
+public class ReachingLocalDefsTest {
+
+  @Test
+  public void testDefinitions() {
+    Jimple jimple = Jimple.v();
+    Local x = jimple.newLocal("x", IntType.v());
+    Local y = jimple.newLocal("y", IntType.v());
+    x.setNumber(7);
+    y.setNumber(9);
+
+    // x = 1; if x == 0 goto s4; x = 2; s4: y = x; return
+    Stmt s1 = jimple.newAssignStmt(x, IntConstant.v(1));
+    Stmt s3 = jimple.newAssignStmt(x, IntConstant.v(2));
+    Stmt s4 = jimple.newAssignStmt(y, x);
+    Stmt s2 = jimple.newIfStmt(jimple.newEqExpr(x, IntConstant.v(0)), s4);
+    Stmt s5 = jimple.newReturnVoidStmt();
+    JimpleBody body =
+        jimple.newBody(new SootMethod("test", Collections.<Type>emptyList(), VoidType.v()));
+    body.getLocals().addAll(Arrays.asList(x, y));
+    body.getUnits().addAll(Arrays.<Unit>asList(s1, s2, s3, s4, s5));
+
+    LocalDefs localDefs = new ReachingLocalDefs(new BriefUnitGraph(body));
+
+    assertEquals(Arrays.asList(s1), localDefs.getDefsOfAt(x, s2));
+    assertEquals(Arrays.asList(s1), localDefs.getDefsOfAt(x, s3));
+    assertEquals(makeSet(s1, s3), new HashSet<>(localDefs.getDefsOfAt(x, s4)));
+    assertEquals(Arrays.asList(s4), localDefs.getDefsOfAt(y, s5));
+    assertTrue(localDefs.getDefsOfAt(y, s4).isEmpty());
+    assertEquals(makeSet(s1, s3), new HashSet<>(localDefs.getDefsOf(x)));
+    // Spark looks up locals by number, so they must not be renumbered.
+    assertEquals(7, x.getNumber());
+    assertEquals(9, y.getNumber());
+  }
+
+  private Set<Unit> makeSet(Unit... units) {
+    return new HashSet<>(Arrays.asList(units));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.psu.cse.siis.coal.lang.ParseException;
+import edu.psu.cse.siis.coal.lang.PropagationParser;
+
+public class ValueLimitsTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testDefaultLimit() {
+    ValueLimits valueLimits = new ValueLimits();
+    valueLimits.setDefaultLimit(4);
+
+    assertFalse(valueLimits.mayBeExceededBy(4));
+    assertTrue(valueLimits.mayBeExceededBy(5));
+    ValueLimits.Limit limit = valueLimits.getLimit(Collections.singleton("extras"));
+    assertEquals(4, limit.getValue());
+    assertFalse(limit.isExceededBy(4));
+    assertTrue(limit.isExceededBy(5));
+    assertEquals("Value limits reached: default=1", valueLimits.getStatistics());
+  }
+
+  @Test
+  public void testSmallestLimit() {
+    ValueLimits valueLimits = new ValueLimits();
+    valueLimits.setLimits("android.content.Intent=64, android.content.Intent:extras=16");
+
+    assertFalse(valueLimits.mayBeExceededBy(16));
+    assertTrue(valueLimits.mayBeExceededBy(17));
+  }
+
+  @Test
+  public void testRaisedLimit() throws IOException, ParseException {
+    Model previousModel = Model.getInstance();
+    Model.setInstance(parseModel("class a.Raised {\n  Set<String> raised;\n  limit 1000;\n}\n"
+        + "class a.Lowered {\n  Set<String> lowered;\n  limit 8;\n}\n"));
+    try {
+      ValueLimits valueLimits = new ValueLimits();
+      valueLimits.setDefaultLimit(256);
+
+      assertEquals(1000, valueLimits.getLimit(Collections.singleton("raised")).getValue());
+      assertEquals(8, valueLimits.getLimit(Arrays.asList("raised", "lowered")).getValue());
+      assertEquals(256, valueLimits.getLimit(Collections.singleton("other")).getValue());
+      assertEquals(256, valueLimits.getLimit(Collections.<String>emptySet()).getValue());
+      valueLimits.setLimit(ValueLimits.makeKey("a.Raised", "raised"), 512);
+      assertEquals(512, valueLimits.getLimit(Collections.singleton("raised")).getValue());
+    } finally {
+      Model.setInstance(previousModel);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadlyFormattedLimits() {
+    new ValueLimits().setLimits("android.content.Intent:extras");
+  }
+
+  @Test
+  public void testParseLimits() throws IOException, ParseException {
+    // "limit" is only a keyword at the start of a limit declaration.
+    Model model = parseModel("class a.Limited {\n  Set<String> limit;\n  int size;\n"
+        + "  limit 32;\n  limit limit 8;\n}\n");
+
+    assertEquals(32, (int) model.getValueLimits().get(ValueLimits.makeKey("a.Limited", null)));
+    assertEquals(8, (int) model.getValueLimits().get(ValueLimits.makeKey("a.Limited", "limit")));
+  }
+
+  @Test
+  public void testBadlyFormattedModelLimit() throws IOException {
+    try {
+      parseModel("class a.Limited {\n  limit 99999999999;\n}\n");
+    } catch (ParseException exception) {
+      assertEquals("Badly formatted integer: 99999999999 at line 2", exception.getMessage());
+      return;
+    }
+    fail();
+  }
+
+  private Model parseModel(String text) throws IOException, ParseException {
+    File file = temporaryFolder.newFile("test.model");
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    Model model = Model.newPartialModel();
+    PropagationParser.parseModelFromFile(model, file);
+    return model;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.arguments;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ArgumentTimeBudgetTest {
+
+  @Test
+  public void testTimeoutsDecreaseBudget() {
+    ArgumentTimeBudget timeBudget = new ArgumentTimeBudget();
+    assertEquals(ArgumentTimeBudget.MAX_TIME, timeBudget.getBudget());
+
+    timeBudget.recordTimeout();
+    assertEquals((long) (ArgumentTimeBudget.MAX_TIME * ArgumentTimeBudget.DECREASE_FACTOR),
+        timeBudget.getBudget());
+
+    for (int i = 0; i < 100; ++i) {
+      timeBudget.recordTimeout();
+    }
+    assertEquals(ArgumentTimeBudget.MIN_TIME, timeBudget.getBudget());
+    assertEquals(101, timeBudget.getTimeoutCount());
+  }
+
+  @Test
+  public void testLatenciesBoundBudget() {
+    ArgumentTimeBudget timeBudget = new ArgumentTimeBudget();
+    for (int i = 1; i < ArgumentTimeBudget.MIN_SAMPLES; ++i) {
+      timeBudget.recordLatency(3000);
+    }
+    assertEquals(ArgumentTimeBudget.MAX_TIME, timeBudget.getBudget());
+
+    timeBudget.recordLatency(3000);
+    // 3000 ms falls in the bucket of latencies smaller than 4096 ms.
+    assertEquals(4096, timeBudget.getLatencyPercentile(ArgumentTimeBudget.PERCENTILE));
+    assertEquals(ArgumentTimeBudget.PERCENTILE_FACTOR * 4096, timeBudget.getBudget());
+  }
+
+  @Test
+  public void testFastLatenciesKeepMinimumBudget() {
+    ArgumentTimeBudget timeBudget = new ArgumentTimeBudget();
+    for (int i = 0; i < ArgumentTimeBudget.MIN_SAMPLES; ++i) {
+      timeBudget.recordLatency(1);
+    }
+    assertEquals(ArgumentTimeBudget.MIN_PERCENTILE_TIME, timeBudget.getBudget());
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.arguments;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ConstraintSizeEstimatorTest {
+
+  private static LanguageConstraints.Box union(int size) {
+    LanguageConstraints.Union union = new LanguageConstraints.Union();
+    for (int i = 0; i < size; ++i) {
+      union.addLCB(new LanguageConstraints.Box(new LanguageConstraints.Terminal("value" + i)));
+    }
+    return new LanguageConstraints.Box(union);
+  }
+
+  private static LanguageConstraints.Box concatenate(LanguageConstraints.Box left,
+      LanguageConstraints.Box right) {
+    return new LanguageConstraints.Box(new LanguageConstraints.Concatenate(left, right));
+  }
+
+  private static LanguageConstraints.Box call() {
+    return new LanguageConstraints.Box(new LanguageConstraints.Call(null, null, null));
+  }
+
+  private static ConstraintSizeEstimator estimator(int maxNodes, long maxValues) {
+    return new ConstraintSizeEstimator(maxNodes, maxValues, 1000, null);
+  }
+
+  @Test
+  public void testValueLimit() {
+    LanguageConstraints.Box box = concatenate(union(10), union(10));
+    assertFalse(estimator(100, 100).exceedsLimits(box));
+    assertTrue(estimator(100, 99).exceedsLimits(box));
+  }
+
+  @Test
+  public void testNodeLimit() {
+    LanguageConstraints.Box box = union(10);
+    assertFalse(estimator(11, 100).exceedsLimits(box));
+    assertTrue(estimator(10, 100).exceedsLimits(box));
+  }
+
+  @Test
+  public void testSharedNodes() {
+    LanguageConstraints.Box box = union(2);
+    for (int i = 0; i < 100; ++i) {
+      box = concatenate(box, box);
+    }
+    // The graph is small, but it describes 2^100 strings.
+    assertTrue(estimator(1000, Long.MAX_VALUE - 1).exceedsLimits(box));
+  }
+
+  @Test
+  public void testCalls() {
+    // Each call is replaced with up to 1000 return values.
+    LanguageConstraints.Box box = concatenate(call(), call());
+    assertFalse(estimator(100, 1000000).exceedsLimits(box));
+    assertTrue(estimator(100, 999999).exceedsLimits(box));
+
+    final Set<Object> returnValues = new HashSet<Object>(Arrays.asList("a", "b", "c"));
+    RecursiveDAGSolverVisitorLC.MethodReturnValueAnalysisInterface returnValueInterface =
+        new RecursiveDAGSolverVisitorLC.MethodReturnValueAnalysisInterface() {
+          @Override
+          public Set<Object> getMethodReturnValues(LanguageConstraints.Call call) {
+            return returnValues;
+          }
+        };
+    assertFalse(new ConstraintSizeEstimator(100, 9, 1000, returnValueInterface)
+        .exceedsLimits(box));
+    assertTrue(new ConstraintSizeEstimator(100, 8, 1000, returnValueInterface)
+        .exceedsLimits(box));
+  }
+
+  @Test
+  public void testParameters() {
+    LanguageConstraints.Box parameter =
+        new LanguageConstraints.Box(new LanguageConstraints.Parameter(null, 0));
+    LanguageConstraints.Box box = concatenate(parameter, union(2));
+    assertFalse(estimator(100, 2000).exceedsLimits(box));
+    assertTrue(estimator(100, 1999).exceedsLimits(box));
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import edu.psu.cse.siis.coal.field.values.FieldValue;
+import edu.psu.cse.siis.coal.field.values.NullFieldValue;
+import edu.psu.cse.siis.coal.values.PathValue;
+
+public class FieldLayoutTest {
+
+  @Test
+  public void testWith() {
+    FieldLayout layout = FieldLayout.EMPTY.with("layoutField1").with("layoutField2");
+
+    assertSame(layout, FieldLayout.EMPTY.with("layoutField2").with("layoutField1"));
+    assertSame(layout, layout.with("layoutField1"));
+    assertEquals(2, layout.size());
+    assertTrue(layout.indexOf("layoutField2") >= 0);
+    assertTrue(layout.indexOf("layoutField3") < 0);
+  }
+
+  @Test
+  public void testUnion() {
+    FieldLayout first = FieldLayout.EMPTY.with("layoutField1").with("layoutField2");
+    FieldLayout second = FieldLayout.EMPTY.with("layoutField2").with("layoutField3");
+    FieldLayout union = first.union(second);
+
+    assertEquals(new HashSet<>(Arrays.asList("layoutField1", "layoutField2", "layoutField3")),
+        union.getFieldNames());
+    assertSame(union, second.union(first));
+    assertSame(union, union.union(first));
+    assertSame(first, first.union(FieldLayout.EMPTY.with("layoutField1")));
+  }
+
+  @Test
+  public void testPathValueFieldMap() {
+    FieldValue fieldValue = NullFieldValue.v();
+    PathValue first = new PathValue();
+    first.addFieldEntry("layoutField1", fieldValue);
+    first.addFieldEntry("layoutField2", null);
+    PathValue second = new PathValue();
+    second.addFieldEntry("layoutField2", null);
+    second.addFieldEntry("layoutField1", fieldValue);
+
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+    assertSame(first.intern(), second.intern());
+    assertEquals(2, first.getFieldMap().size());
+    assertTrue(first.getFieldMap().containsKey("layoutField2"));
+    assertSame(fieldValue, first.getFieldMap().get("layoutField1"));
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.field.values;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class StringWideningTest {
+
+  private static Set<Object> set(Object... values) {
+    return new HashSet<>(Arrays.asList(values));
+  }
+
+  @Test
+  public void testSmallSet() {
+    Set<Object> values = set("a", "b");
+    assertSame(values, StringWidening.widen(values, 2));
+    assertSame(values, StringWidening.widen(values, 0));
+  }
+
+  @Test
+  public void testNonStrings() {
+    Set<Object> values = set(1, 2, 3);
+    assertSame(values, StringWidening.widen(values, 2));
+  }
+
+  @Test
+  public void testPrefixWidening() {
+    Set<Object> values =
+        set("http://a.com/x?id=1", "http://a.com/x?id=2", "http://a.com/x?id=3",
+            "http://b.com/y", "http://b.com/z");
+    assertEquals(set("http://a.com/x?id=(.*)", "http://b.com/y", "http://b.com/z"),
+        StringWidening.widen(values, 3));
+    assertEquals(set("http://a.com/x?id=(.*)", "http://b.com/(.*)"),
+        StringWidening.widen(values, 2));
+    assertEquals(set("http://(.*)"), StringWidening.widen(values, 1));
+  }
+
+  @Test
+  public void testExistingPatterns() {
+    Set<Object> values = set("abc(.*)", "abcd", "abce", "xyz");
+    assertEquals(set("abc(.*)", "xyz"), StringWidening.widen(values, 2));
+    assertEquals(set("(.*)"), StringWidening.widen(set("", "a", "b"), 1));
+  }
+}
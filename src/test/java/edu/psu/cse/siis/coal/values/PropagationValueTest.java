@@ -20,6 +20,7 @@ package edu.psu.cse.siis.coal.values;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.util.HashSet;
@@ -107,6 +108,30 @@ public class PropagationValueTest {
     assertFalse(expectedFieldValues.equals(simplePropagationValue.getValuesForField(fields1[0])));
   }
 
+  @Test
+  public void testJoinWith() {
+    PropagationValue first = new PropagationValue();
+    first.addPathValue(makeBranchValue(fields1, fieldValues1));
+    first.addPathValue(makeBranchValue(fields2, fieldValues2));
+    first = first.intern();
+
+    PropagationValue second = new PropagationValue();
+    second.addPathValue(makeBranchValue(fields3, fieldValues3));
+    second.addPathValue(makeBranchValue(fields1, fieldValues1));
+    second = second.intern();
+
+    PropagationValue expected = new PropagationValue();
+    expected.addPathValue(makeBranchValue(fields3, fieldValues3));
+    expected.addPathValue(makeBranchValue(fields2, fieldValues2));
+    expected.addPathValue(makeBranchValue(fields1, fieldValues1));
+
+    assertEquals(expected, first.joinWith(second));
+    assertSame(first.joinWith(second), second.joinWith(first));
+    assertSame(expected.intern(), first.joinWith(second));
+    assertSame(first, first.joinWith(first));
+    assertEquals(3, expected.getPathValues().size());
+  }
+
   // @Test
   // public void testMakeFinalValue() {
   // FieldValue[] fieldValues1 = makeFieldValues("11", 3);